@@ -0,0 +1,27 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def buildLog = new File( basedir, 'build.log' ).text
+
+// fluido 1.7 renders the publish date and nothing is verified, so the site is generated and deployed by one build
+assert buildLog.contains( ':deploy (default-deploy)' )
+assert !buildLog.contains( ':deploy (default-cli)' )
+
+def page = new File( basedir, 'deployed/index.html' )
+assert page.text.contains( 'Last Published: 2001-02-03' )
+assert new File( basedir, 'deployed/css' ).isDirectory()
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.security.MessageDigest
+
+// the manifest of a previous deployment, with a file which is no longer part of the site
+def deployed = new File( basedir, 'deployed' )
+deployed.mkdirs()
+new File( deployed, 'removed.html' ).text = '<html><body>removed</body></html>'
+
+def url = 'file://' + new File( basedir, 'target/siteskinner' ).absolutePath + '/../../deployed'
+def manifest = new File( basedir, 'cache/localhost/incremental-deploy/1.0/site-'
+    + MessageDigest.getInstance( 'MD5' ).digest( url.getBytes( 'UTF-8' ) ).encodeHex() + '.properties' )
+manifest.parentFile.mkdirs()
+manifest.text = 'removed.html=0\n'
+
+return true
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def buildLog = new File( basedir, 'build.log' ).text
+def deployments = ( buildLog =~ /Deploying (\d+) of (\d+) files to \S+, removing (\d+) files/ ).collect { it }
+assert deployments.size() == 2
+
+// the first deployment sends the complete site and removes the file of the previous deployment
+assert deployments[0][1] == deployments[0][2]
+assert deployments[0][3] == '1'
+assert !new File( basedir, 'deployed/removed.html' ).exists()
+
+// the second deployment only sends the pages with the new publish date, the resources of the skin are unchanged
+assert deployments[1][1].toInteger() > 0
+assert deployments[1][1].toInteger() < deployments[1][2].toInteger()
+assert deployments[1][3] == '0'
+
+def page = new File( basedir, 'deployed/index.html' )
+assert page.text.contains( 'Last Published: 2001-02-04' )
+assert new File( basedir, 'deployed/css' ).isDirectory()
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+// a local install after the release, its lastUpdated is not the publishDate of the release
+def metadata = new File( localRepositoryPath, 'localhost/local-metadata/maven-metadata-local.xml' )
+metadata.parentFile.mkdirs()
+metadata.text = '''<?xml version="1.0" encoding="UTF-8"?>
+<metadata>
+  <groupId>localhost</groupId>
+  <artifactId>local-metadata</artifactId>
+  <versioning>
+    <release>1.0</release>
+    <versions>
+      <version>1.0</version>
+    </versions>
+    <lastUpdated>20300405060708</lastUpdated>
+  </versioning>
+</metadata>
+'''
+return true
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+// a Maven 2 installation, next to a directory which isn't one; its mvn only records the arguments and writes a page
+def mavenHome = new File( basedir, 'maven-homes/maven-2.2.1' )
+new File( basedir, 'maven-homes/other' ).mkdirs()
+
+def lib = new File( mavenHome, 'lib' )
+lib.mkdirs()
+def jar = new ZipOutputStream( new FileOutputStream( new File( lib, 'maven-core-2.2.1.jar' ) ) )
+jar.putNextEntry( new ZipEntry( 'META-INF/maven/org.apache.maven/maven-core/pom.properties' ) )
+jar.write( 'groupId=org.apache.maven\nartifactId=maven-core\nversion=2.2.1\n'.getBytes( 'UTF-8' ) )
+jar.closeEntry()
+jar.close()
+
+def mvn = new File( mavenHome, 'bin/mvn' )
+mvn.parentFile.mkdirs()
+mvn.text = '''#!/bin/sh
+echo "Maven 2.2.1 executing: $*"
+mkdir -p target/site
+echo '<html><body><p>Generated by Maven 2.2.1</p></body></html>' > target/site/index.html
+'''
+mvn.setExecutable( true )
+return true
@@ -0,0 +1,24 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def buildLog = new File( basedir, 'build.log' ).text
+
+// the running Maven 3 can't execute maven-site-plugin:2.3, so the discovered Maven 2 installation generates the site
+assert buildLog =~ /Using Maven 2\.2\.1 at \S+maven-2\.2\.1 for maven-site-plugin:2\.3/
+assert buildLog.contains( 'Maven 2.2.1 executing: ' )
+assert new File( basedir, 'target/siteskinner/target/site/index.html' ).text.contains( 'Generated by Maven 2.2.1' )
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+// publish the released sources in a local git repository, tagged like a release
+def run( File directory, List command )
+{
+    def process = new ProcessBuilder( command ).directory( directory ).redirectErrorStream( true ).start()
+    process.inputStream.eachLine { println it }
+    assert process.waitFor() == 0
+}
+
+def sources = new File( basedir, '../../../src/it/scm/mirror-1.0' ).canonicalPath
+def git = [ 'git', '--git-dir=repo.git', '--work-tree=' + sources ]
+run( basedir, [ 'git', 'init', '-q', '--bare', 'repo.git' ] )
+run( basedir, git + [ 'add', '.' ] )
+run( basedir, git + [ '-c', 'user.name=siteskinner', '-c', 'user.email=siteskinner@localhost', 'commit', '-q', '-m', 'release' ] )
+run( basedir, git + [ 'tag', 'mirror-1.0' ] )
+return true
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def mirrors = new File( basedir, 'target/mirrors' )
+def buildLog = new File( basedir, 'build.log' ).text
+
+assert buildLog.contains( 'Creating mirror of ../../repo.git' )
+assert buildLog.contains( 'Updating mirror of ../../repo.git' )
+
+// the complete clone has been renamed, the lock is kept for the next build
+def mirror = mirrors.listFiles().find { it.isDirectory() }
+assert mirror != null
+assert !mirror.name.endsWith( '.tmp' )
+assert new File( mirror, 'refs/tags/mirror-1.0' ).exists() || new File( mirror, 'packed-refs' ).text.contains( 'mirror-1.0' )
+assert new File( mirrors, mirror.name + '.lock' ).exists()
+
+// the sources are checked out from the mirror
+def checkout = new File( basedir, 'target/siteskinner' )
+def state = new Properties()
+new File( checkout, '.siteskinner-checkout.properties' ).withInputStream { state.load( it ) }
+assert state.getProperty( 'connection' ).startsWith( 'scm:git:file://' )
+assert new File( checkout, 'target/site/index.html' ).exists()
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+// publish the release in a local git repository with some history before and after the released tag
+def run( File directory, List command )
+{
+    def process = new ProcessBuilder( command ).directory( directory ).redirectErrorStream( true ).start()
+    process.inputStream.eachLine { println it }
+    assert process.waitFor() == 0
+}
+
+def sources = new File( basedir, '../../../src/it/scm/shallow-fetch-1.0' ).canonicalPath
+def git = [ 'git', '--git-dir=repo.git', '--work-tree=' + sources, '-c', 'user.name=siteskinner',
+            '-c', 'user.email=siteskinner@localhost' ]
+run( basedir, [ 'git', 'init', '-q', '--bare', 'repo.git' ] )
+run( basedir, git + [ 'add', '.' ] )
+( 1..5 ).each { run( basedir, git + [ 'commit', '-q', '--allow-empty', '-m', 'before ' + it ] ) }
+run( basedir, git + [ 'tag', 'shallow-fetch-1.0' ] )
+( 1..5 ).each { run( basedir, git + [ 'commit', '-q', '--allow-empty', '-m', 'after ' + it ] ) }
+return true
@@ -0,0 +1,26 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def checkout = new File( basedir, 'target/siteskinner' )
+assert new File( checkout, 'target/site/index.html' ).exists()
+
+// only the commit of the released tag has been fetched
+assert new File( checkout, '.git/shallow' ).exists()
+def process = new ProcessBuilder( [ 'git', 'rev-list', '--count', '--all' ] ).directory( checkout ).start()
+assert process.inputStream.text.trim() == '1'
+assert process.waitFor() == 0
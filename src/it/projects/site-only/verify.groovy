@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def checkout = new File( basedir, 'target/siteskinner' )
+def buildLog = new File( basedir, 'build.log' ).text
+
+// the first invocation checked out only the site
+assert buildLog.contains( 'Fetching only **/pom.xml,**/src/site/**' )
+
+// the second invocation needs all sources, so the sparse checkout is replaced
+assert buildLog.contains( "doesn't contain the sources of fetchMode full" )
+assert new File( checkout, 'src/main/java/localhost/SiteOnly.java' ).exists()
+assert new File( checkout, 'target/site/index.html' ).exists()
+
+def state = new Properties()
+new File( checkout, '.siteskinner-checkout.properties' ).withInputStream { state.load( it ) }
+assert state.getProperty( 'fetchMode' ) == 'full'
+assert state.getProperty( 'includes' ) == null
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+// deploy the released sources as source-release.zip, with the usual root directory
+def sources = new File( basedir, '../../../src/it/scm/source-archive-1.0' ).canonicalFile
+def archive = new File( localRepositoryPath, 'localhost/source-archive/1.0/source-archive-1.0-source-release.zip' )
+archive.parentFile.mkdirs()
+def zip = new ZipOutputStream( new FileOutputStream( archive ) )
+sources.eachFileRecurse { file ->
+    if ( file.isFile() && !file.path.contains( File.separator + 'target' + File.separator ) )
+    {
+        zip.putNextEntry( new ZipEntry( 'source-archive-1.0/' + file.path.substring( sources.path.length() + 1 ).replace( '\\', '/' ) ) )
+        zip.write( file.bytes )
+        zip.closeEntry()
+    }
+}
+zip.close()
+return true
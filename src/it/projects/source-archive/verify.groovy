@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def buildLog = new File( basedir, 'build.log' ).text
+
+// the first invocation extracts only the files required for the site
+assert buildLog.contains( '[INFO] Extracting localhost:source-archive:zip:source-release:1.0 to ' )
+def checkout = new File( basedir, 'target/siteskinner' )
+assert new File( checkout, 'pom.xml' ).exists()
+assert new File( checkout, 'src/site/apt/index.apt' ).exists()
+assert !new File( checkout, 'src/main/java/localhost/Main.java' ).exists()
+
+// the second invocation reuses the extracted sources
+assert buildLog.count( 'Extracting localhost:source-archive' ) == 1
+assert buildLog.contains( ' already contains localhost:source-archive:zip:source-release:1.0' )
+
+def page = new File( checkout, 'target/site/index.html' )
+assert page.exists()
+assert page.text.contains( 'extracted from the source-release.zip' )
@@ -0,0 +1,28 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def buildLog = new File( basedir, 'build.log' ).text
+assert buildLog.contains( '1.0 : SUCCESS' )
+assert buildLog.contains( '1.1 : SUCCESS' )
+assert buildLog =~ /Staged 2 versions to \S+, saved [1-9]\d* KB by linking identical files/
+
+// every version is staged in its own directory, the resources of the skin are stored once
+def staging = new File( basedir, 'target/siteskinner/staging' )
+assert new File( staging, '1.0/index.html' ).text.contains( 'The released site of version 1.0' )
+assert new File( staging, '1.1/index.html' ).text.contains( 'The released site of version 1.1' )
+assert new File( staging, '1.0/css/apache-maven-fluido-1.7.min.css' ).text == new File( staging, '1.1/css/apache-maven-fluido-1.7.min.css' ).text
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+// publish both releases in a local git repository and check out the previous one like a previous run did
+def run( File directory, List command )
+{
+    def process = new ProcessBuilder( command ).directory( directory ).redirectErrorStream( true ).start()
+    process.inputStream.eachLine { println it }
+    assert process.waitFor() == 0
+}
+
+run( basedir, [ 'git', 'init', '-q', '--bare', 'repo.git' ] )
+[ '1.0', '1.1' ].each { version ->
+    def sources = new File( basedir, '../../../src/it/scm/tag-switch-' + version ).canonicalPath
+    def git = [ 'git', '--git-dir=repo.git', '--work-tree=' + sources ]
+    run( basedir, git + [ 'add', '-A', '.' ] )
+    run( basedir, git + [ '-c', 'user.name=siteskinner', '-c', 'user.email=siteskinner@localhost', 'commit', '-q', '-m', version ] )
+    run( basedir, git + [ 'tag', 'tag-switch-' + version ] )
+}
+
+def checkout = new File( basedir, 'target/siteskinner' )
+checkout.parentFile.mkdirs()
+run( basedir, [ 'git', 'clone', '-q', 'repo.git', checkout.path ] )
+run( checkout, [ 'git', 'checkout', '-q', 'tag-switch-1.0' ] )
+
+def state = new Properties()
+state.setProperty( 'connection', 'scm:git:../../repo.git' )
+state.setProperty( 'tag', 'tag-switch-1.0' )
+state.setProperty( 'fetchMode', 'full' )
+new File( checkout, '.siteskinner-checkout.properties' ).withOutputStream { state.store( it, null ) }
+return true
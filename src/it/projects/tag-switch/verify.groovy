@@ -0,0 +1,29 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def checkout = new File( basedir, 'target/siteskinner' )
+def buildLog = new File( basedir, 'build.log' ).text
+
+// the working copy of 1.0 is switched instead of checked out again
+assert buildLog.contains( 'Switching ' + checkout + ' to tag-switch-1.1' )
+assert !buildLog.contains( 'Performing checkout' )
+
+assert new File( checkout, 'src/site/apt/index.apt' ).text.contains( 'version 1.1' )
+assert !new File( checkout, 'src/site/apt/removed.apt' ).exists()
+assert new File( checkout, 'target/site/index.html' ).exists()
+assert !new File( checkout, 'target/site/removed.html' ).exists()
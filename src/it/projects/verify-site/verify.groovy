@@ -0,0 +1,29 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+def buildLog = new File( basedir, 'build.log' ).text
+
+// the first invocation verifies the site against the published one, which has a page the reskinned site has lost
+assert buildLog.contains( '[WARNING] The verification of the site of 1.0 failed: ' )
+assert buildLog.contains( ', 1 lost, ' )
+
+// the second invocation doesn't verify by default
+assert buildLog.count( 'The verification of the site of 1.0 failed' ) == 1
+assert !buildLog.contains( 'Verified the site of 1.0' )
+assert !new File( basedir, 'target/siteskinner/target/siteskinner-verify.txt' ).exists()
+assert new File( basedir, 'target/siteskinner/target/site/index.html' ).exists()
@@ -0,0 +1,8 @@
+package localhost;
+
+/**
+ * Not required for the site.
+ */
+public class SiteOnly
+{
+}
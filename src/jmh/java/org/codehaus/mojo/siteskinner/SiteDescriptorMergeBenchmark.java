@@ -0,0 +1,129 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the merge of the site descriptors of a released version: reading the released <code>site.xml</code> of
+ * every locale, merging the current site descriptor into it and writing the result. Run it with
+ * <code>mvn -Pjmh test-compile exec:exec</code>, the gc profiler reports the allocation rate.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SiteDescriptorMergeBenchmark
+{
+    /**
+     * The number of menu items of the released site descriptor, and of entries in its custom section.
+     */
+    @Param( { "10", "100", "1000" } )
+    public int items;
+
+    /**
+     * The number of locales, each with its own site descriptor.
+     */
+    @Param( { "1", "4", "16" } )
+    public int locales;
+
+    private byte[] releasedSiteXml;
+
+    private DecorationModel currentModel;
+
+    private final SiteDescriptorMerger merger = new SiteDescriptorMerger( true );
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        releasedSiteXml = createReleasedSiteXml( items ).getBytes( "UTF-8" );
+        byte[] currentSiteXml = createCurrentSiteXml( items ).getBytes( "UTF-8" );
+        currentModel = new DecorationXpp3Reader().read( new ByteArrayInputStream( currentSiteXml ), false );
+    }
+
+    @Benchmark
+    public void merge( Blackhole blackhole )
+        throws Exception
+    {
+        for ( int i = 0; i < locales; i++ )
+        {
+            DecorationModel releasedModel =
+                new DecorationXpp3Reader().read( new ByteArrayInputStream( releasedSiteXml ), false );
+            blackhole.consume( merger.merge( releasedModel, currentModel, currentModel, "2012-08-31" ) );
+        }
+    }
+
+    private static String createReleasedSiteXml( int items )
+    {
+        StringBuilder siteXml = new StringBuilder( "<project name=\"Released\">\n" );
+        siteXml.append( "  <skin><groupId>org.apache.maven.skins</groupId>" );
+        siteXml.append( "<artifactId>maven-default-skin</artifactId><version>1.0</version></skin>\n" );
+        siteXml.append( "  <body>\n    <menu name=\"Overview\">\n" );
+        for ( int i = 0; i < items; i++ )
+        {
+            siteXml.append( "      <item name=\"Page " ).append( i ).append( "\" href=\"page-" ).append( i );
+            siteXml.append( ".html\"/>\n" );
+        }
+        siteXml.append( "    </menu>\n    <menu ref=\"reports\"/>\n  </body>\n  <custom>\n" );
+        for ( int i = 0; i < items; i++ )
+        {
+            siteXml.append( "    <released" ).append( i ).append( ">value</released" ).append( i ).append( ">\n" );
+        }
+        siteXml.append( "    <publishDate>2011-01-01</publishDate>\n  </custom>\n</project>\n" );
+        return siteXml.toString();
+    }
+
+    private static String createCurrentSiteXml( int items )
+    {
+        StringBuilder siteXml = new StringBuilder( "<project name=\"Current\">\n" );
+        siteXml.append( "  <bannerLeft><name>Current</name><href>http://www.mojohaus.org/</href></bannerLeft>\n" );
+        siteXml.append( "  <skin><groupId>org.apache.maven.skins</groupId>" );
+        siteXml.append( "<artifactId>maven-fluido-skin</artifactId><version>1.3.1</version></skin>\n" );
+        siteXml.append( "  <publishDate position=\"right\" format=\"yyyy-MM-dd\"/>\n" );
+        siteXml.append( "  <body>\n    <breadcrumbs><item name=\"Mojo\" href=\"http://www.mojohaus.org/\"/>" );
+        siteXml.append( "</breadcrumbs>\n" );
+        siteXml.append( "    <footer>Footer</footer>\n  </body>\n  <custom>\n    <fluidoSkin>\n" );
+        for ( int i = 0; i < items; i++ )
+        {
+            siteXml.append( "      <current" ).append( i ).append( ">value</current" ).append( i ).append( ">\n" );
+        }
+        siteXml.append( "    </fluidoSkin>\n  </custom>\n</project>\n" );
+        return siteXml.toString();
+    }
+}
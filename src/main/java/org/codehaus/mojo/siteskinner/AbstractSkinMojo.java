@@ -0,0 +1,2787 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.manager.WagonManager;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.apache.maven.doxia.site.decoration.Skin;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.doxia.siterenderer.RendererException;
+import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
+import org.apache.maven.doxia.tools.SiteTool;
+import org.apache.maven.doxia.tools.SiteToolException;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.model.ReportPlugin;
+import org.apache.maven.model.Site;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.manager.ScmManager;
+import org.apache.maven.shared.invoker.CommandLineConfigurationException;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.DefaultInvoker;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.Invoker;
+import org.apache.maven.shared.invoker.InvokerLogger;
+import org.apache.maven.shared.invoker.MavenCommandLineBuilder;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Shared logic of the siteskinner goals: check out a released version of the project, add/replace the skin of its
+ * site.xml with the skin of the current project and invoke a <code>mvn site</code> on the checked out project.
+ *
+ * @since 1.1
+ */
+public abstract class AbstractSkinMojo
+    extends AbstractMojo
+{
+    private static final String MAVEN_SITE_PLUGIN_KEY = "org.apache.maven.plugins:maven-site-plugin";
+
+    private static final String MAVEN_SKINS_GROUP_ID = "org.apache.maven.skins";
+
+    /**
+     * Stores the connection, tag and revision of the working copy, so a following run can tell if it can be updated
+     * or has to be switched to another tag.
+     */
+    private static final String CHECKOUT_STATE_FILENAME = ".siteskinner-checkout.properties";
+
+    /**
+     * Stores the inputs of the last successful site generation, so a following run can skip it if nothing changed.
+     */
+    private static final String FINGERPRINT_FILENAME = ".siteskinner-fingerprint.properties";
+
+    private static final String FETCH_MODE_FULL = "full";
+
+    private static final String FETCH_MODE_SITE_ONLY = "site-only";
+
+    private static final String FETCH_STRATEGY_SCM = "scm";
+
+    private static final String FETCH_STRATEGY_REPOSITORY = "repository";
+
+    private static final String DEPLOY_MODE_FULL = "full";
+
+    private static final String DEPLOY_MODE_INCREMENTAL = "incremental";
+
+    private static final String SITE_BUILD_MODE_FORK = "fork";
+
+    private static final String SITE_BUILD_MODE_IN_PROCESS = "in-process";
+
+    private static final String SITE_BUILD_MODE_WORKER = "worker";
+
+    private static final String SITE_BUILD_MODE_RERENDER = "rerender";
+
+    /**
+     * Reports which only use the pom.xml, all other reports are expected to require the sources.
+     */
+    private static final List<String> POM_ONLY_REPORTS =
+        Arrays.asList( new String[] { "org.apache.maven.plugins:maven-project-info-reports-plugin",
+            "org.apache.maven.plugins:maven-changes-plugin", "org.codehaus.mojo:versions-maven-plugin" } );
+
+    /**
+     * Some versions of the maven-site-plugin require a specific Maven version. This check is done by the siteskinner.
+     * You can fork the execution of the site generation to another version of maven by setting the {@code mavenHome}
+     * <table>
+     * <tr>
+     * <th>Maven Site Plugin version</th>
+     * <th>Required Maven version</th>
+     * </tr>
+     * <tr>
+     * <td>(,3.0-alpha-1)</td>
+     * <td>2.x</td>
+     * </tr>
+     * <tr>
+     * <td>[3.0-alpha-1,3.0)</td>
+     * <td>3.x</td>
+     * </tr>
+     * <tr>
+     * <td>[3.0,)</td>
+     * <td>2.x or 3.x</td>
+     * </tr>
+     * </table>
+     * @since 1.1
+     */
+    @Parameter( property = "mavenHome" )
+    private File mavenHome;
+
+    /**
+     * Other Maven installations, which generate the site of a released version if the Maven of {@code mavenHome} isn't
+     * compatible with its maven-site-plugin. The installation with the highest compatible version is picked. Their
+     * versions are indexed once in the {@code cacheDirectory}.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.mavenHomes" )
+    private File[] mavenHomes;
+
+    /**
+     * A directory containing Maven installations, like the one the Maven distributions have been unpacked in. They're
+     * used in the same way as the {@code mavenHomes}.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.mavenHomesDirectory" )
+    private File mavenHomesDirectory;
+
+    /**
+     * Addition arguments, accepts:
+     * <ul>
+     *   <li>-D,--define &lt;arg&gt;</li>
+     *   <li>-P,--activate-profiles &lt;arg&gt;</li>
+     *   <li>-X,--debug</li>
+     *   <li>-T,--threads &lt;arg&gt;, see {@code siteThreads}</li>
+     * </ul>
+     * @since 1.1
+     */
+    @Parameter( property = "arguments" )
+    private String arguments;
+
+    /**
+     * The number of threads of the site generation, e.g. <code>4</code> or <code>1C</code> for one thread per core.
+     * The sites of the modules of a multi-module release are then generated in parallel, as far as the dependencies
+     * between them allow, and staged into one site under <code>target/staging</code>. Requires Maven 3.x, it's ignored
+     * for Maven 2.x.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.siteThreads" )
+    private String siteThreads;
+
+    /**
+     * Force a checkout instead of an update when the sources have already been checked out during a previous run.
+     * @since 1.0
+     */
+    @Parameter( property = "forceCheckout", defaultValue = "false" )
+    private boolean forceCheckout;
+
+    /**
+     * Which sources of the released version should be fetched:
+     * <ul>
+     *   <li><code>full</code>: all sources</li>
+     *   <li><code>site-only</code>: only the files required for the site, i.e. the pom.xml files, the site directories
+     *   and, if the released project has reports which need them, the source directories. Supported by git, through
+     *   a sparse checkout with the native git client, and by the local provider. Other providers, like svn, ignore
+     *   the includes of Maven SCM, so all sources are fetched.</li>
+     * </ul>
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.fetchMode", defaultValue = FETCH_MODE_FULL )
+    private String fetchMode;
+
+    /**
+     * Where the sources of the released version are fetched from:
+     * <ul>
+     *   <li><code>scm</code>: checked out from the SCM connection of the released pom</li>
+     *   <li><code>repository</code>: extracted from the <code>source-release.zip</code> or <code>project.zip</code>
+     *   deployed with the released version. A <code>sources.jar</code> isn't used, since it doesn't contain the site.
+     *   Combined with the <code>site-only</code> fetchMode only the files required for the site are extracted. If
+     *   none of these archives exists, the sources are checked out from the SCM.</li>
+     * </ul>
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.fetchStrategy", defaultValue = FETCH_STRATEGY_SCM )
+    private String fetchStrategy;
+
+    /**
+     * Check out the released sources from a local mirror of the SCM repository. The mirror is created with the first
+     * checkout and updated incrementally once per build, so following checkouts don't need to transfer the complete
+     * history again. Only supported for git connections: svn and other connections are used directly, since
+     * <code>svnsync</code> can only mirror a complete svn repository.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.useMirror", defaultValue = "false" )
+    private boolean useMirror;
+
+    /**
+     * The directory containing the local mirrors of the SCM repositories, shared by all projects.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.mirrorDirectory", defaultValue = "${user.home}/.m2/siteskinner-mirrors" )
+    private File mirrorDirectory;
+
+    /**
+     * Fetch only the commit of the released tag from git connections, without the history, instead of cloning the
+     * complete repository. Requires the native git, if the commit can't be fetched this way the repository is cloned.
+     * Reports which need the history, like the changelog, only see the released commit.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.shallowFetch", defaultValue = "false" )
+    private boolean shallowFetch;
+
+    /**
+     * How the site of the released version is generated:
+     * <ul>
+     *   <li><code>fork</code>: by a forked Maven, see {@code mavenHome}</li>
+     *   <li><code>in-process</code>: by Maven embedded in the JVM of the current build, which saves starting another
+     *   JVM and loading Maven. Requires Maven 3.x and is only used when the site is generated with the running Maven,
+     *   otherwise the build is forked. Only one embedded build is executed at a time.</li>
+     *   <li><code>worker</code>: by a pool of warm Maven processes per Maven installation, see {@code mavenHome}. The
+     *   processes are reused by all site builds of the running build, which saves starting and warming up a JVM for
+     *   each of them. Every build still creates its own Maven container. There are at most as many processes per
+     *   installation as processors. Requires Maven 3.x, otherwise the build is forked.</li>
+     *   <li><code>rerender</code>: the content of the already generated pages, see {@code renderedSiteDirectory}, is
+     *   decorated with the new skin and merged site.xml, without generating the site again. Reports and pages without
+     *   decoration, like javadoc, are kept as they are. When there are no generated pages, the site is forked.</li>
+     * </ul>
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.siteBuildMode", defaultValue = SITE_BUILD_MODE_FORK )
+    private String siteBuildMode;
+
+    /**
+     * The generated or published site of the released version, used by the <code>rerender</code> siteBuildMode, e.g.
+     * an unpacked copy of the deployed site. Defaults to the site generated by a previous run.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.renderedSiteDirectory" )
+    private File renderedSiteDirectory;
+
+    /**
+     * If {@code true}, all the elements of the body in the {@code site.xml} will be merged, except the menu items. Set
+     * to {@false} if you don't want to merge the body.
+     * @since 1.0
+     */
+    @Parameter( property = "mergeBody", defaultValue = "true" )
+    private boolean mergeBody;
+
+    /**
+     * If {@code false} the plugin should only generate the site, else if {@code true} the site should be published
+     * immediately too.
+     * @since 1.0
+     */
+    @Parameter( property = "siteDeploy", defaultValue = "false" )
+    private boolean siteDeploy;
+
+    /**
+     * How the site is deployed when {@code siteDeploy} is set:
+     * <ul>
+     *   <li><code>full</code>: every file is deployed by <code>mvn site-deploy</code>, or by <code>mvn site:deploy</code>
+     *   after the generation if the site is verified or the publish dates of its pages are rewritten first</li>
+     *   <li><code>incremental</code>: only the files which changed since the last deployment of the released version
+     *   are deployed to the site of its distribution management, based on a manifest with the digest of every
+     *   deployed file kept in the {@code cacheDirectory}. Files which are no longer part of the site are removed from
+     *   <code>file://</code> sites, other protocols don't support removing files.</li>
+     * </ul>
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.deployMode", defaultValue = DEPLOY_MODE_FULL )
+    private String deployMode;
+
+    /**
+     * Verify the reskinned site before it's deployed: compared with the published site, no file may have been lost,
+     * and no local link or resource of the pages may be broken. The result is written to
+     * <code>siteskinner-verify.txt</code> next to the generated site. If the verification fails, the site isn't
+     * deployed. Disabled by default, so the site is generated and deployed like it was before 1.1.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.verify", defaultValue = "false" )
+    private boolean verify;
+
+    /**
+     * A copy of the published site of the released version, which the reskinned site is compared with. Defaults to
+     * {@code renderedSiteDirectory}, otherwise to the manifest of the last incremental deployment.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.publishedSiteDirectory" )
+    private File publishedSiteDirectory;
+
+    /**
+     * Use the cached data of released versions, i.e. their pom and publishDate, instead of retrieving them again.
+     * Released versions never change, so with this option a repeated run doesn't need the remote repositories for
+     * them.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.offlineFirst", defaultValue = "false" )
+    private boolean offlineFirst;
+
+    /**
+     * The number of minutes the list of released versions is cached. With {@code 0} the list is always retrieved
+     * from the remote repositories.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.versionsCacheTtl", defaultValue = "0" )
+    private int versionsCacheTtl;
+
+    /**
+     * The directory containing the cached data of released versions, shared by all projects.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.cacheDirectory", defaultValue = "${user.home}/.m2/siteskinner-cache" )
+    private File cacheDirectory;
+
+    /**
+     * The file the duration of every stage of the reskin is written to, as JSON.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.metricsFile",
+                defaultValue = "${project.build.directory}/siteskinner/siteskinner-metrics.json" )
+    private File metricsFile;
+
+    /**
+     * In most cases this plugin can discover the original publishDate. You could set this value for those cases when this fails
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.publishDate" )
+    private String publishDate;
+    
+    /**
+     * Specifies the input encoding.
+     * @since 1.0
+     */
+    @Parameter( defaultValue = "${project.build.sourceEncoding}", property = "encoding" )
+    private String inputEncoding;
+
+    /**
+     * Specifies the output encoding.
+     * @since 1.0
+     */
+    @Parameter( defaultValue = "${project.reporting.outputEncoding}", property = "outputEncoding" )
+    private String outputEncoding;
+
+    /* Read-only parmaters */
+    
+    /**
+     * The working directory for this plugin.
+     */
+    @Parameter( defaultValue = "${project.build.directory}/siteskinner", readonly = true )
+    protected File workingDirectory;
+
+    /**
+     * The reactor projects.
+     */
+    @Parameter( defaultValue = "${reactorProjects}", readonly = true, required = true )
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * Gets the input files encoding.
+     * 
+     * @return The input files encoding, never <code>null</code>.
+     */
+    private String getInputEncoding()
+    {
+        return ( inputEncoding == null ) ? ReaderFactory.ISO_8859_1 : inputEncoding;
+    }
+
+    /**
+     * Gets the effective reporting output files encoding.
+     * 
+     * @return The effective reporting output file encoding, never <code>null</code>.
+     */
+    private String getOutputEncoding()
+    {
+        return ( outputEncoding == null ) ? WriterFactory.UTF_8 : outputEncoding;
+    }
+
+    @Component
+    private MavenProject currentProject;
+
+    /**
+     * The local repository where the artifacts are located.
+     */
+    @Parameter( defaultValue = "${localRepository}", readonly = true, required = true )
+    private ArtifactRepository localRepository;
+
+    /**
+     * @since 1.0
+     */
+    @Parameter( property = "settingsFile" )
+    private File settingsFile;
+
+    /**
+     * The remote repositories where artifacts are located.
+     */
+    @Parameter( defaultValue = "${project.remoteArtifactRepositories}", readonly = true, required = true )
+    private List<ArtifactRepository> remoteRepositories;
+
+    @Component
+    private MavenProjectBuilder mavenProjectBuilder;
+
+    @Component
+    private ScmManager scmManager;
+
+    @Component
+    private ArtifactMetadataSource metadataSource;
+
+    @Component
+    private ArtifactFactory factory;
+
+    @Component
+    private ArtifactResolver resolver;
+
+    @Component
+    private SiteTool siteTool;
+
+    @Component
+    private Invoker invoker;
+
+    @Component
+    private Renderer siteRenderer;
+
+    @Component
+    private WagonManager wagonManager;
+
+    private ReleaseCache releaseCache;
+
+    private MavenInstallations mavenInstallations;
+
+    private PomModelReader pomModelReader;
+
+    private ParentPrefetcher parentPrefetcher;
+
+    /**
+     * The duration of the stages of this execution, written to the {@code metricsFile}.
+     */
+    protected final SkinMetrics metrics = new SkinMetrics();
+
+    /**
+     * The inherited site descriptors of the current project per locale, shared by all reskinned versions
+     */
+    private final Memoizer<Locale, DecorationModel> resolvedCurrentModels = new Memoizer<Locale, DecorationModel>()
+    {
+        protected DecorationModel compute( Locale locale )
+            throws Exception
+        {
+            return getDecorationModel( currentProject, reactorProjects,
+                                       getSiteDirectory( getSitePluginConfiguration( currentProject ) ), locale );
+        }
+    };
+
+    /**
+     * The site descriptors of the current project per locale, shared by all reskinned versions
+     */
+    private final Memoizer<Locale, DecorationModel> currentModels = new Memoizer<Locale, DecorationModel>()
+    {
+        protected DecorationModel compute( Locale locale )
+            throws Exception
+        {
+            File currentSiteXml =
+                siteTool.getSiteDescriptorFromBasedir( getSiteDirectory( getSitePluginConfiguration( currentProject ) ),
+                                                       currentProject.getBasedir(), locale );
+
+            if ( currentSiteXml.exists() )
+            {
+                return readDecorationModel( new DecorationXpp3Reader(), currentSiteXml );
+            }
+            else
+            {
+                return new DecorationModel();
+            }
+        }
+    };
+
+    /**
+     * Reskin the site of a released version of the current project.
+     * 
+     * @param releasedArtifact the artifact of the released version
+     * @param checkoutDirectory the directory where the sources of the released version will be checked out
+     * @param outputHandler the handler for the output of the forked <code>mvn site</code>, may be {@code null}
+     * @return the directory containing the generated site
+     * @throws MojoExecutionException if the released version can't be reskinned
+     * @throws MojoFailureException if the current project or the released version is misconfigured
+     */
+    protected File skin( final Artifact releasedArtifact, final File checkoutDirectory,
+                         InvocationOutputHandler outputHandler )
+        throws MojoExecutionException, MojoFailureException
+    {
+        final File releasedPom =
+            new File( localRepository.getBasedir(),
+                      localRepository.pathOf( factory.createProjectArtifact( releasedArtifact.getGroupId(),
+                                                                             releasedArtifact.getArtifactId(),
+                                                                             releasedArtifact.getVersion() ) ) );
+        final long preResolveDate = releasedPom.exists() ? -1 : System.currentTimeMillis();
+
+        final SkinMetrics.Version versionMetrics = metrics.version( releasedArtifact.getVersion() );
+        long start;
+
+        // the stages which don't depend on each other run at the same time, e.g. the publish date is resolved and the
+        // site descriptors of the current project are read while the sources are fetched
+        final StagePipeline pipeline = new StagePipeline( versionMetrics );
+        MavenProject releasedProject;
+        File siteMavenHome;
+        Date releaseDate;
+        InvocationRequest request;
+        try
+        {
+            final Future<MavenProject> externalProject = pipeline.stage( "resolve-pom", new Callable<MavenProject>()
+            {
+                public MavenProject call()
+                    throws MojoExecutionException
+                {
+                    return resolveExternalProject( releasedArtifact );
+                }
+            } );
+
+            // the parents are known now, resolve their site descriptors while the sources are fetched
+            Future<Void> prefetch = pipeline.stage( "prefetch", new Callable<Void>()
+            {
+                public Void call()
+                    throws Exception
+                {
+                    MavenProject project = pipeline.await( externalProject );
+                    List<Parent> projectParents = new ArrayList<Parent>();
+                    projectParents.add( project.getModel().getParent() );
+                    projectParents.add( currentProject.getModel().getParent() );
+                    waitForPrefetch( getParentPrefetcher().start( projectParents, getLocales( project ) ) );
+                    return null;
+                }
+            }, externalProject );
+
+            Future<Void> fetch = pipeline.stage( "fetch-sources", new Callable<Void>()
+            {
+                public Void call()
+                    throws Exception
+                {
+                    fetchSources( checkoutDirectory, pipeline.await( externalProject ), releasedArtifact,
+                                  releasedPom, versionMetrics );
+                    return null;
+                }
+            }, externalProject );
+
+            final Future<MavenProject> builtProject = pipeline.stage( "build-project", new Callable<MavenProject>()
+            {
+                public MavenProject call()
+                    throws MojoExecutionException
+                {
+                    File checkedOutPom = new File( checkoutDirectory, "pom.xml" );
+                    try
+                    {
+                        MavenProject project = new MavenProject( getPomModelReader().read( checkedOutPom ) );
+                        project.setFile( checkedOutPom );
+                        return project;
+                    }
+                    catch ( ProjectBuildingException e )
+                    {
+                        throw new MojoExecutionException( e.getMessage() );
+                    }
+                }
+            }, fetch );
+
+            // the site descriptors of the current project may inherit from the prefetched parents
+            Future<Void> currentSite = pipeline.stage( "current-site-descriptors", new Callable<Void>()
+            {
+                public Void call()
+                    throws Exception
+                {
+                    resolveCurrentSiteDescriptors( getLocales( pipeline.await( externalProject ) ) );
+                    return null;
+                }
+            }, prefetch );
+
+            Future<Date> repositoryDate = null;
+            if ( publishDate == null )
+            {
+                repositoryDate = pipeline.stage( "publish-date", new Callable<Date>()
+                {
+                    public Date call()
+                    {
+                        return resolvePublishDate( releasedArtifact, releasedPom, preResolveDate );
+                    }
+                }, externalProject );
+            }
+
+            final Future<File> mavenHome = pipeline.stage( "select-maven", new Callable<File>()
+            {
+                public File call()
+                    throws Exception
+                {
+                    return selectMavenHome( pipeline.await( builtProject ) );
+                }
+            }, builtProject );
+
+            Future<InvocationRequest> preparedRequest =
+                pipeline.stage( "prepare-request", new Callable<InvocationRequest>()
+                {
+                    public InvocationRequest call()
+                        throws Exception
+                    {
+                        return buildInvokerRequest( pipeline.await( builtProject ),
+                                                    pipeline.await( mavenHome ) );
+                    }
+                }, mavenHome );
+
+            releasedProject = await( pipeline, builtProject );
+            siteMavenHome = await( pipeline, mavenHome );
+            request = await( pipeline, preparedRequest );
+            releaseDate = repositoryDate == null ? null : await( pipeline, repositoryDate );
+            await( pipeline, currentSite );
+        }
+        finally
+        {
+            pipeline.shutdown();
+        }
+
+        if ( publishDate == null && releaseDate == null )
+        {
+            start = System.currentTimeMillis();
+            releaseDate = resolvePublishDateFromSources( releasedArtifact, checkoutDirectory );
+            versionMetrics.stage( "publish-date-sources", start );
+        }
+
+        final String releasedSiteDirectory = getSiteDirectory( getSitePluginConfiguration( releasedProject ) );
+
+        Xpp3Dom currentConfig = getSitePluginConfiguration( currentProject );
+        final String currentSiteDirectory = getSiteDirectory( currentConfig );
+
+        final MavenProject project = releasedProject;
+        final Date date = releaseDate;
+
+        start = System.currentTimeMillis();
+        List<Locale> locales = getLocales( releasedProject );
+        ExecutorService executor =
+            Executors.newFixedThreadPool( Math.max( 1, Math.min( locales.size(),
+                                                                 Runtime.getRuntime().availableProcessors() ) ) );
+        List<Future<String>> merges = new ArrayList<Future<String>>();
+        try
+        {
+            for ( final Locale locale : locales )
+            {
+                merges.add( executor.submit( new Callable<String>()
+                {
+                    public String call()
+                        throws Exception
+                    {
+                        return mergeSiteDescriptor( locale, project, releasedSiteDirectory, currentSiteDirectory,
+                                                    date );
+                    }
+                } ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Properties fingerprint = new Properties();
+        for ( int i = 0; i < locales.size(); i++ )
+        {
+            try
+            {
+                String siteDescriptorDigest = merges.get( i ).get();
+                if ( siteDescriptorDigest != null )
+                {
+                    fingerprint.setProperty( "site.xml." + locales.get( i ), siteDescriptorDigest );
+                }
+            }
+            catch ( ExecutionException e )
+            {
+                rethrow( e.getCause() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while merging the site descriptors" );
+            }
+        }
+        versionMetrics.stage( "merge-site-descriptors", start );
+
+        File fingerprintFile = new File( checkoutDirectory, FINGERPRINT_FILENAME );
+        try
+        {
+            Properties state = readCheckoutState( checkoutDirectory );
+            fingerprint.setProperty( "connection", state.getProperty( "connection", "" ) );
+            fingerprint.setProperty( "tag", state.getProperty( "tag", "" ) );
+            fingerprint.setProperty( "revision", state.getProperty( "revision", "" ) );
+            fingerprint.setProperty( "fetchMode", state.getProperty( "fetchMode", "" ) );
+            fingerprint.setProperty( "arguments", StringUtils.defaultString( arguments ) );
+            fingerprint.setProperty( "siteBuildMode", StringUtils.defaultString( siteBuildMode ) );
+            fingerprint.setProperty( "siteThreads", StringUtils.defaultString( siteThreads ) );
+
+            if ( !isFullDeploy() && fingerprint.equals( readProperties( fingerprintFile ) )
+                && new File( getSiteOutputDirectory( releasedProject ), "index.html" ).exists() )
+            {
+                getLog().info( "The site of " + releasedArtifact.getVersion()
+                                   + " is up to date, skipping the site generation" );
+                if ( isIncrementalDeploy() )
+                {
+                    start = System.currentTimeMillis();
+                    verifySite( releasedArtifact, releasedProject );
+                    versionMetrics.stage( "verify", start );
+
+                    start = System.currentTimeMillis();
+                    deployIncrementally( releasedArtifact, releasedProject );
+                    versionMetrics.stage( "deploy", start );
+                    versionMetrics.deploy( DEPLOY_MODE_INCREMENTAL, 0 );
+                }
+                return getGeneratedSiteDirectory( releasedProject );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+
+        if ( outputHandler != null )
+        {
+            request.setOutputHandler( outputHandler );
+            request.setErrorHandler( outputHandler );
+        }
+
+        long generationStart = System.currentTimeMillis();
+        boolean rerendered =
+            SITE_BUILD_MODE_RERENDER.equals( siteBuildMode )
+                && rerenderSite( releasedProject, locales, releasedSiteDirectory );
+        if ( rerendered )
+        {
+            versionMetrics.stage( "rerender", generationStart );
+        }
+        else
+        {
+            if ( isFullDeploy() && !isPostProcessingRequired( releasedProject, locales, releaseDate ) )
+            {
+                // nothing has to be adjusted between the generation and the deployment, so one build does both
+                List<String> goals = new ArrayList<String>( request.getGoals() );
+                goals.set( goals.indexOf( "site" ), "site-deploy" );
+                request.setGoals( goals );
+            }
+            executeSiteBuild( request, siteMavenHome, outputHandler, versionMetrics );
+            versionMetrics.stage( "site-build", generationStart );
+        }
+
+        start = System.currentTimeMillis();
+        rewritePublishDates( releasedProject, locales, releaseDate, generationStart );
+        versionMetrics.stage( "publish-date-rewrite", start );
+
+        start = System.currentTimeMillis();
+        verifySite( releasedArtifact, releasedProject );
+        versionMetrics.stage( "verify", start );
+
+        start = System.currentTimeMillis();
+        if ( isIncrementalDeploy() )
+        {
+            deployIncrementally( releasedArtifact, releasedProject );
+            versionMetrics.stage( "deploy", start );
+            versionMetrics.deploy( DEPLOY_MODE_INCREMENTAL, 0 );
+        }
+        else if ( siteDeploy && !request.getGoals().contains( "site-deploy" ) )
+        {
+            request.setGoals( Collections.singletonList( "site:deploy" ) );
+            executeSiteBuild( request, siteMavenHome, outputHandler, versionMetrics );
+            versionMetrics.stage( "deploy", start );
+        }
+
+        try
+        {
+            writeProperties( fingerprint, fingerprintFile, "siteskinner fingerprint of the generated site" );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+        return getGeneratedSiteDirectory( releasedProject );
+    }
+
+    /**
+     * @param siteMavenHome the Maven installation to generate the site with, {@code null} for the running Maven
+     */
+    private void executeSiteBuild( InvocationRequest request, File siteMavenHome, InvocationOutputHandler outputHandler,
+                                   SkinMetrics.Version versionMetrics )
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( SITE_BUILD_MODE_WORKER.equals( siteBuildMode ) )
+        {
+            executeByWorker( request, siteMavenHome, outputHandler, versionMetrics );
+        }
+        else if ( isInProcess( siteMavenHome ) )
+        {
+            executeInProcess( request, outputHandler, versionMetrics );
+        }
+        else
+        {
+            executeForked( request, siteMavenHome, versionMetrics );
+        }
+    }
+
+    /**
+     * Record the exit code of a forked, in-process or worker build as either the site generation or the deployment of
+     * the version, depending on the goals of the request.
+     */
+    private static void recordExitCode( InvocationRequest request, SkinMetrics.Version versionMetrics, String mode,
+                                        int exitCode )
+    {
+        if ( request.getGoals().contains( "site:deploy" ) )
+        {
+            versionMetrics.deploy( mode, exitCode );
+        }
+        else
+        {
+            versionMetrics.siteBuild( mode, exitCode );
+            if ( request.getGoals().contains( "site-deploy" ) )
+            {
+                versionMetrics.deploy( mode, exitCode );
+            }
+        }
+    }
+
+    /**
+     * Decorate the already generated pages of the released version with the new skin.
+     * 
+     * @return {@code true} if the site has been re-rendered, {@code false} if there are no generated pages
+     */
+    private boolean rerenderSite( MavenProject releasedModelProject, List<Locale> locales,
+                                  String releasedSiteDirectory )
+        throws MojoExecutionException
+    {
+        File outputDirectory = getSiteOutputDirectory( releasedModelProject );
+        File sourceDirectory = renderedSiteDirectory == null ? outputDirectory : renderedSiteDirectory;
+        if ( !new File( sourceDirectory, "index.html" ).exists() )
+        {
+            getLog().warn( "No generated site found at " + sourceDirectory + ", generating the site instead" );
+            return false;
+        }
+
+        try
+        {
+            // the pages are rendered in-process, which needs the built project, e.g. for the inherited site.xml.
+            // The project builder is locked like in getDecorationModel
+            MavenProject releasedProject;
+            synchronized ( mavenProjectBuilder )
+            {
+                synchronized ( resolver )
+                {
+                    releasedProject =
+                        mavenProjectBuilder.build( releasedModelProject.getFile(), localRepository, null );
+                }
+            }
+
+            if ( !sourceDirectory.getCanonicalFile().equals( outputDirectory.getCanonicalFile() ) )
+            {
+                FileUtils.copyDirectoryStructure( sourceDirectory, outputDirectory );
+            }
+
+            File resourcesDirectory =
+                new File( releasedProject.getBasedir(), getRelativePath( releasedProject, releasedSiteDirectory,
+                                                                         "src/site" ) + "/resources" );
+
+            SiteRerenderer rerenderer = new SiteRerenderer( siteRenderer, getLog() );
+            for ( int i = 0; i < locales.size(); i++ )
+            {
+                Locale locale = locales.get( i );
+
+                File localeDirectory = outputDirectory;
+                String excludes = null;
+                if ( i > 0 )
+                {
+                    localeDirectory = new File( outputDirectory, locale.getLanguage() );
+                }
+                else
+                {
+                    List<String> otherLocales = new ArrayList<String>();
+                    for ( Locale otherLocale : locales.subList( 1, locales.size() ) )
+                    {
+                        otherLocales.add( otherLocale.getLanguage() + "/**" );
+                    }
+                    excludes = StringUtils.join( otherLocales.iterator(), "," );
+                }
+
+                DecorationModel decoration =
+                    getDecorationModel( releasedProject, Collections.singletonList( releasedProject ),
+                                        releasedSiteDirectory, locale );
+                populateReportsMenu( decoration, localeDirectory );
+
+                Map<String, Object> attributes = new HashMap<String, Object>();
+                attributes.put( "inputEncoding", getInputEncoding() );
+                attributes.put( "outputEncoding", getOutputEncoding() );
+                attributes.put( "project", releasedProject );
+
+                File skinFile =
+                    siteTool.getSkinArtifactFromRepository( localRepository, remoteRepositories, decoration ).getFile();
+                SiteRenderingContext context =
+                    siteRenderer.createContextForSkin( skinFile, attributes, decoration, releasedProject.getName(),
+                                                       locale );
+
+                siteRenderer.copyResources( context, resourcesDirectory, localeDirectory );
+                int pages =
+                    rerenderer.rerender( context, localeDirectory, excludes,
+                                         Arrays.asList( new String[] { releasedProject.getName(), decoration.getName() } ),
+                                         getOutputEncoding() );
+                getLog().info( "Re-rendered " + pages + " pages of " + localeDirectory );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( ProjectBuildingException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( SiteToolException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( RendererException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        return true;
+    }
+
+    /**
+     * The reports menu is generated by the maven-site-plugin from the configured reports. Without executing them,
+     * it can only refer to the overview pages which have been generated.
+     */
+    private void populateReportsMenu( DecorationModel decoration, File siteDirectory )
+    {
+        Menu menu = decoration.getMenuRef( "reports" );
+        if ( menu == null || !menu.getItems().isEmpty() )
+        {
+            return;
+        }
+
+        if ( menu.getName() == null )
+        {
+            menu.setName( "Project Documentation" );
+        }
+        String[][] overviews =
+            { { "Project Information", "project-info.html" }, { "Project Reports", "project-reports.html" } };
+        for ( String[] overview : overviews )
+        {
+            if ( new File( siteDirectory, overview[1] ).exists() )
+            {
+                MenuItem item = new MenuItem();
+                item.setName( overview[0] );
+                item.setHref( overview[1] );
+                menu.addItem( item );
+            }
+        }
+
+        if ( menu.getItems().isEmpty() )
+        {
+            decoration.removeMenuRef( "reports" );
+        }
+    }
+
+    private File getSiteOutputDirectory( MavenProject releasedProject )
+    {
+        if ( releasedProject.getReporting() != null && releasedProject.getReporting().getOutputDirectory() != null )
+        {
+            File outputDirectory = new File( releasedProject.getReporting().getOutputDirectory() );
+            if ( outputDirectory.isAbsolute() )
+            {
+                return outputDirectory;
+            }
+            return new File( releasedProject.getBasedir(), outputDirectory.getPath() );
+        }
+        return new File( releasedProject.getBasedir(), "target/site" );
+    }
+
+    /**
+     * @return the staged site if the sites of the modules have been staged, otherwise the site of the project
+     */
+    private File getGeneratedSiteDirectory( MavenProject releasedProject )
+    {
+        File siteDirectory = getSiteOutputDirectory( releasedProject );
+        File stagingDirectory = new File( siteDirectory.getParentFile(), "staging" );
+        if ( !releasedProject.getModules().isEmpty() && stagingDirectory.isDirectory() )
+        {
+            return stagingDirectory;
+        }
+        return siteDirectory;
+    }
+
+    /**
+     * @return the staged site, or the site of the project and the sites of its modules if they haven't been staged
+     */
+    private List<File> getGeneratedSiteDirectories( MavenProject releasedProject )
+    {
+        List<File> siteDirectories = new ArrayList<File>();
+        File siteDirectory = getGeneratedSiteDirectory( releasedProject );
+        siteDirectories.add( siteDirectory );
+        if ( siteDirectory.equals( getSiteOutputDirectory( releasedProject ) ) )
+        {
+            addModuleSiteDirectories( releasedProject.getBasedir(), releasedProject.getModules(), siteDirectories );
+        }
+        return siteDirectories;
+    }
+
+    private void addModuleSiteDirectories( File basedir, List<String> modules, List<File> siteDirectories )
+    {
+        for ( String module : modules )
+        {
+            File moduleDirectory = new File( basedir, module );
+            File modulePom = new File( moduleDirectory, "pom.xml" );
+            if ( moduleDirectory.isFile() )
+            {
+                modulePom = moduleDirectory;
+                moduleDirectory = moduleDirectory.getParentFile();
+            }
+
+            Model moduleModel;
+            try
+            {
+                moduleModel = getPomModelReader().read( modulePom );
+            }
+            catch ( ProjectBuildingException e )
+            {
+                getLog().debug( "Unable to read the module " + module + ": " + e.getMessage() );
+                siteDirectories.add( new File( moduleDirectory, "target/site" ) );
+                continue;
+            }
+
+            String outputDirectory =
+                moduleModel.getReporting() == null ? null : moduleModel.getReporting().getOutputDirectory();
+            if ( outputDirectory == null )
+            {
+                siteDirectories.add( new File( moduleDirectory, "target/site" ) );
+            }
+            else if ( new File( outputDirectory ).isAbsolute() )
+            {
+                siteDirectories.add( new File( outputDirectory ) );
+            }
+            else
+            {
+                siteDirectories.add( new File( moduleDirectory, outputDirectory ) );
+            }
+            addModuleSiteDirectories( moduleDirectory, moduleModel.getModules(), siteDirectories );
+        }
+    }
+
+    private void executeForked( InvocationRequest request, File siteMavenHome, SkinMetrics.Version versionMetrics )
+        throws MojoExecutionException
+    {
+        Invoker siteInvoker = invoker;
+        if ( siteMavenHome != null && !siteMavenHome.equals( mavenHome ) )
+        {
+            // the invoker of the configured mavenHome is shared, so use another one for this installation
+            siteInvoker = new DefaultInvoker();
+            siteInvoker.setLocalRepositoryDirectory( invoker.getLocalRepositoryDirectory() );
+            siteInvoker.setLogger( invoker.getLogger() );
+            siteInvoker.setMavenHome( siteMavenHome );
+        }
+
+        try
+        {
+            InvocationResult invocationResult = siteInvoker.execute( request );
+            recordExitCode( request, versionMetrics, SITE_BUILD_MODE_FORK, invocationResult.getExitCode() );
+            if ( invocationResult.getExitCode() != 0 )
+            {
+                throw new MojoExecutionException( invocationResult.getExecutionException().getMessage() );
+            }
+        }
+        catch ( MavenInvocationException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Verify if the site can be generated by the running Maven without forking. The compatibility of the running
+     * Maven with the maven-site-plugin of the released version has already been verified when the site isn't generated
+     * by another Maven installation.
+     */
+    private boolean isInProcess( File siteMavenHome )
+        throws MojoFailureException
+    {
+        if ( SITE_BUILD_MODE_FORK.equals( siteBuildMode ) )
+        {
+            return false;
+        }
+        else if ( !SITE_BUILD_MODE_IN_PROCESS.equals( siteBuildMode ) )
+        {
+            throw new MojoFailureException( "Unsupported siteBuildMode: " + siteBuildMode );
+        }
+
+        File runningMavenHome = getRunningMavenHome();
+        try
+        {
+            if ( siteMavenHome != null && !siteMavenHome.getCanonicalFile().equals( runningMavenHome ) )
+            {
+                getLog().info( "Forking the site generation to " + siteMavenHome );
+                return false;
+            }
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+
+        if ( !EmbeddedMaven.isSupported( runningMavenHome ) )
+        {
+            getLog().warn( "The running Maven can't generate the site in-process, forking it instead" );
+            return false;
+        }
+        return true;
+    }
+
+    private File getRunningMavenHome()
+    {
+        String runningMavenHome = System.getProperty( "maven.home" );
+        try
+        {
+            return runningMavenHome == null ? null : new File( runningMavenHome ).getCanonicalFile();
+        }
+        catch ( IOException e )
+        {
+            return new File( runningMavenHome );
+        }
+    }
+
+    private void executeInProcess( InvocationRequest request, InvocationOutputHandler outputHandler,
+                                   SkinMetrics.Version versionMetrics )
+        throws MojoExecutionException
+    {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        if ( outputHandler != null )
+        {
+            out = new PrintStream( new LineOutputStream( outputHandler, System.out, getOutputEncoding() ), true );
+            err = new PrintStream( new LineOutputStream( outputHandler, System.err, getOutputEncoding() ), true );
+        }
+
+        try
+        {
+            String[] args = buildArguments( request, getRunningMavenHome() );
+            getLog().debug( "Executing in-process: mvn " + StringUtils.join( args, " " ) );
+
+            int exitCode =
+                EmbeddedMaven.execute( getRunningMavenHome(), args, request.getPomFile().getParentFile(), out, err );
+            recordExitCode( request, versionMetrics, SITE_BUILD_MODE_IN_PROCESS, exitCode );
+            if ( exitCode != 0 )
+            {
+                throw new MojoExecutionException( "The in-process site generation failed with exit code " + exitCode );
+            }
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        finally
+        {
+            if ( outputHandler != null )
+            {
+                out.close();
+                err.close();
+            }
+        }
+    }
+
+    private void executeByWorker( InvocationRequest request, File siteMavenHome, InvocationOutputHandler outputHandler,
+                                  SkinMetrics.Version versionMetrics )
+        throws MojoExecutionException
+    {
+        File workerMavenHome = siteMavenHome == null ? getRunningMavenHome() : siteMavenHome;
+        if ( workerMavenHome == null )
+        {
+            executeForked( request, siteMavenHome, versionMetrics );
+            return;
+        }
+
+        InvocationOutputHandler handler = outputHandler;
+        if ( handler == null )
+        {
+            handler = new InvocationOutputHandler()
+            {
+                public void consumeLine( String line )
+                {
+                    getLog().info( line );
+                }
+            };
+        }
+
+        Integer exitCode;
+        try
+        {
+            String[] args = buildArguments( request, workerMavenHome );
+            getLog().debug( "Executing by worker: mvn " + StringUtils.join( args, " " ) );
+
+            exitCode =
+                new SiteWorkerPool( getLog() ).execute( workerMavenHome, args, request.getPomFile().getParentFile(),
+                                                        handler );
+        }
+        catch ( Exception e )
+        {
+            getLog().warn( "The site worker failed, forking the site generation instead: " + e.getMessage() );
+            exitCode = null;
+        }
+
+        if ( exitCode == null )
+        {
+            getLog().debug( "No site worker available for " + workerMavenHome );
+            executeForked( request, siteMavenHome, versionMetrics );
+            return;
+        }
+
+        recordExitCode( request, versionMetrics, SITE_BUILD_MODE_WORKER, exitCode.intValue() );
+        if ( exitCode.intValue() != 0 )
+        {
+            throw new MojoExecutionException( "The site generation by the worker failed with exit code " + exitCode );
+        }
+    }
+
+    /**
+     * The command line arguments of the request, the same as used by the forked Maven. The embedded builds must not
+     * wait for input, so they're always executed in batch mode.
+     */
+    private String[] buildArguments( InvocationRequest request, File home )
+        throws CommandLineConfigurationException
+    {
+        request.setInteractive( false );
+
+        MavenCommandLineBuilder commandLineBuilder = new MavenCommandLineBuilder();
+        commandLineBuilder.setMavenHome( home );
+        commandLineBuilder.setLocalRepositoryDirectory( new File( localRepository.getBasedir() ) );
+        return commandLineBuilder.build( request ).getArguments();
+    }
+
+    /**
+     * Prepare the invoker for the forked <code>mvn site</code> executions. Must be called once before the first call
+     * of {@link #skin(Artifact, File, InvocationOutputHandler)}.
+     */
+    protected void configureInvoker()
+    {
+        invoker.setLocalRepositoryDirectory( new File( localRepository.getBasedir() ) );
+        invoker.setMavenHome( mavenHome );
+
+        if ( getLog().isDebugEnabled() )
+        {
+            invoker.getLogger().setThreshold( InvokerLogger.DEBUG );
+        }
+        else if ( getLog().isInfoEnabled() )
+        {
+            invoker.getLogger().setThreshold( InvokerLogger.INFO );
+        }
+        else if ( getLog().isWarnEnabled() )
+        {
+            invoker.getLogger().setThreshold( InvokerLogger.WARN );
+        }
+        else if ( getLog().isErrorEnabled() )
+        {
+            invoker.getLogger().setThreshold( InvokerLogger.ERROR );
+        }
+    }
+
+    /**
+     * Merge the site descriptor of the current project into the site descriptor of the released project. The site
+     * descriptor is only rewritten if the merge changed it, so its timestamp is kept on a repeated run.
+     * 
+     * @return the digest of the merged site descriptor, or {@code null} if there's none for this locale
+     */
+    private String mergeSiteDescriptor( Locale locale, MavenProject releasedProject, String releasedSiteDirectory,
+                                      String currentSiteDirectory, Date releaseDate )
+        throws MojoExecutionException, MojoFailureException, IOException, XmlPullParserException
+    {
+        DecorationModel resolvedCurrentModel;
+        DecorationModel currentModel;
+        try
+        {
+            resolvedCurrentModel = resolvedCurrentModels.get( locale );
+            currentModel = currentModels.get( locale );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof SiteToolException )
+            {
+                getLog().warn( e.getCause().getMessage(), e.getCause() );
+                return null;
+            }
+            rethrow( e.getCause() );
+            return null;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while resolving the site descriptor" );
+        }
+
+        if ( resolvedCurrentModel.getSkin() == null )
+        {
+            throw new MojoFailureException(
+                                            "No skin defined in the current project, neither inherited; Can't apply a new skin on the old site." );
+        }
+
+        File releasedSiteXml =
+            siteTool.getSiteDescriptorFromBasedir( releasedSiteDirectory, releasedProject.getBasedir(), locale );
+
+        DecorationModel releasedModel = null;
+        if ( releasedSiteXml.exists() )
+        {
+            releasedModel = readDecorationModel( new DecorationXpp3Reader(), releasedSiteXml );
+        }
+        else
+        {
+            // already create folders to be sure we can write to this file
+            releasedSiteXml.getParentFile().mkdirs();
+            releasedModel = new DecorationModel();
+        }
+
+        String publishDateFormat = SiteDescriptorMerger.getPublishDateFormat( currentModel );
+        String publishDateValue;
+        if ( publishDate == null )
+        {
+            publishDateValue = new SimpleDateFormat( publishDateFormat ).format( releaseDate );
+        }
+        else
+        {
+            // verify that specified publishDate matches the publishDateFormat
+            try
+            {
+                new SimpleDateFormat( publishDateFormat ).parse( publishDate );
+            }
+            catch ( java.text.ParseException e )
+            {
+                throw new MojoExecutionException( e.getMessage() );
+            }
+            publishDateValue = publishDate;
+        }
+
+        byte[] mergedBytes =
+            new SiteDescriptorMerger( mergeBody ).merge( releasedModel, resolvedCurrentModel, currentModel,
+                                                         publishDateValue );
+
+        if ( releasedSiteXml.exists() && Arrays.equals( mergedBytes, readBytes( releasedSiteXml ) ) )
+        {
+            getLog().debug( releasedSiteXml + " is up to date" );
+        }
+        else
+        {
+            FileOutputStream fileOutputStream = new FileOutputStream( releasedSiteXml );
+            try
+            {
+                fileOutputStream.write( mergedBytes );
+            }
+            finally
+            {
+                IOUtil.close( fileOutputStream );
+            }
+        }
+        return Digests.md5( mergedBytes );
+    }
+
+    private static byte[] readBytes( File file )
+        throws IOException
+    {
+        FileInputStream inputStream = new FileInputStream( file );
+        try
+        {
+            return IOUtil.toByteArray( inputStream );
+        }
+        finally
+        {
+            IOUtil.close( inputStream );
+        }
+    }
+
+    /**
+     * Replace the date of the site generation by the publish date in the generated pages, for skins which don't
+     * support the publish date of the merged site descriptor. The pages of the modules are rewritten as well.
+     */
+    private void rewritePublishDates( MavenProject releasedProject, List<Locale> locales, Date releaseDate,
+                                      long generationStart )
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( releaseDate == null && publishDate == null )
+        {
+            return;
+        }
+
+        Map<String, String> replacements = new HashMap<String, String>();
+        for ( Locale locale : locales )
+        {
+            DecorationModel currentModel;
+            try
+            {
+                currentModel = currentModels.get( locale );
+            }
+            catch ( ExecutionException e )
+            {
+                rethrow( e.getCause() );
+                return;
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while reading the site descriptor" );
+            }
+
+            // the pages are rendered with the date format of the locale, the generation may have passed midnight
+            DateFormat dateFormat =
+                new SimpleDateFormat( SiteDescriptorMerger.getPublishDateFormat( currentModel ), locale );
+            String released = releaseDate == null ? publishDate : dateFormat.format( releaseDate );
+            for ( long time : new long[] { generationStart, System.currentTimeMillis() } )
+            {
+                String generated = dateFormat.format( new Date( time ) );
+                if ( !generated.equals( released ) )
+                {
+                    replacements.put( generated, released );
+                }
+            }
+        }
+
+        try
+        {
+            PublishDateRewriter rewriter = new PublishDateRewriter( replacements, getOutputEncoding() );
+            int pages = 0;
+            for ( File siteDirectory : getGeneratedSiteDirectories( releasedProject ) )
+            {
+                pages += rewriter.rewrite( siteDirectory );
+            }
+            if ( pages > 0 )
+            {
+                getLog().info( "Rewrote the publish date of " + pages + " pages" );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Verify the generated site against the published one, which prevents the deployment if files have been lost or
+     * links have been broken.
+     */
+    private void verifySite( Artifact releasedArtifact, MavenProject releasedProject )
+        throws MojoExecutionException, MojoFailureException
+    {
+        File siteDirectory = getGeneratedSiteDirectory( releasedProject );
+        if ( !verify || !siteDirectory.isDirectory() )
+        {
+            return;
+        }
+
+        Set<String> excludedDirectories = new HashSet<String>();
+        if ( !releasedProject.getModules().isEmpty()
+            && siteDirectory.equals( getSiteOutputDirectory( releasedProject ) ) )
+        {
+            // the sites of the modules haven't been staged, so they are generated and deployed by themselves
+            for ( String module : (List<String>) releasedProject.getModules() )
+            {
+                excludedDirectories.add( new File( module ).getName() );
+                try
+                {
+                    File modulePom = new File( new File( releasedProject.getBasedir(), module ), "pom.xml" );
+                    excludedDirectories.add( getPomModelReader().read( modulePom ).getArtifactId() );
+                }
+                catch ( ProjectBuildingException e )
+                {
+                    getLog().debug( "Unable to read the module " + module + ": " + e.getMessage() );
+                }
+            }
+        }
+
+        File publishedDirectory = publishedSiteDirectory != null ? publishedSiteDirectory : renderedSiteDirectory;
+        if ( publishedDirectory != null && !publishedDirectory.isDirectory() )
+        {
+            throw new MojoFailureException( "The published site " + publishedDirectory + " doesn't exist" );
+        }
+
+        String published = publishedDirectory == null ? null : publishedDirectory.getPath();
+        Properties publishedManifest = null;
+        if ( publishedDirectory == null && releasedProject.getDistributionManagement() != null
+            && releasedProject.getDistributionManagement().getSite() != null
+            && releasedProject.getDistributionManagement().getSite().getUrl() != null )
+        {
+            String url = releasedProject.getDistributionManagement().getSite().getUrl();
+            publishedManifest = getReleaseCache().getSiteManifest( releasedArtifact, url );
+            published = publishedManifest == null ? null : "the manifest of the deployment to " + url;
+        }
+
+        File report = new File( siteDirectory.getParentFile(), "siteskinner-verify.txt" );
+        SiteVerifier.Result result;
+        try
+        {
+            result =
+                new SiteVerifier( getOutputEncoding(), excludedDirectories ).verify( siteDirectory, publishedDirectory,
+                                                                                     publishedManifest );
+            result.write( report, siteDirectory, published );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        if ( !result.isFailed() )
+        {
+            getLog().info( "Verified the site of " + releasedArtifact.getVersion() + ": " + result.getSummary() );
+        }
+        else if ( siteDeploy )
+        {
+            throw new MojoFailureException( "The site of " + releasedArtifact.getVersion() + " is not deployed, "
+                + "the verification failed: " + result.getSummary() + ", see " + report );
+        }
+        else
+        {
+            getLog().warn( "The verification of the site of " + releasedArtifact.getVersion() + " failed: "
+                               + result.getSummary() + ", see " + report );
+        }
+    }
+
+    /**
+     * Rethrow the cause of an {@link ExecutionException} as a mojo exception.
+     */
+    private static void rethrow( Throwable cause )
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( cause instanceof MojoExecutionException )
+        {
+            throw (MojoExecutionException) cause;
+        }
+        else if ( cause instanceof MojoFailureException )
+        {
+            throw (MojoFailureException) cause;
+        }
+        else if ( cause instanceof RuntimeException )
+        {
+            throw (RuntimeException) cause;
+        }
+        else if ( cause instanceof Error )
+        {
+            throw (Error) cause;
+        }
+        throw new MojoExecutionException( cause.getMessage(), (Exception) cause );
+    }
+
+    /**
+     * Resolve the publish date from the cache or the repository, which doesn't need the checked out sources.
+     * 
+     * @return the publish date, or {@code null} if it has to be resolved from the sources
+     */
+    private Date resolvePublishDate( Artifact releasedArtifact, File releasedPom, long preResolveDate )
+    {
+        Date releaseDate = offlineFirst ? getReleaseCache().getPublishDate( releasedArtifact ) : null;
+        if ( releaseDate != null )
+        {
+            getLog().debug( "Using cached publishDate of " + releasedArtifact.getVersion() );
+            return releaseDate;
+        }
+
+        PublishDateResolver publishDateResolver =
+            new PublishDateResolver( resolver, localRepository, remoteRepositories, getLog() );
+        releaseDate = publishDateResolver.resolveFromRepository( releasedArtifact, releasedPom, preResolveDate );
+        if ( releaseDate != null )
+        {
+            getLog().debug( "Release date: " + releaseDate );
+            getReleaseCache().putPublishDate( releasedArtifact, releaseDate );
+        }
+        return releaseDate;
+    }
+
+    private Date resolvePublishDateFromSources( Artifact releasedArtifact, File checkoutDirectory )
+        throws MojoExecutionException
+    {
+        Date releaseDate;
+        try
+        {
+            Properties state = readCheckoutState( checkoutDirectory );
+            ScmCommandExecutor executor =
+                new ScmCommandExecutor( scmManager, state.getProperty( "connection" ), getLog() );
+
+            PublishDateResolver publishDateResolver =
+                new PublishDateResolver( resolver, localRepository, remoteRepositories, getLog() );
+            releaseDate =
+                publishDateResolver.resolveFromSources( releasedArtifact, executor, checkoutDirectory,
+                                                        state.getProperty( "tag" ) );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+
+        if ( releaseDate == null )
+        {
+            throw new MojoExecutionException( "Unable to determine the publishDate of " + releasedArtifact.getVersion()
+                + ", please specify it with siteskinner.publishDate" );
+        }
+        getLog().debug( "Release date: " + releaseDate );
+        getReleaseCache().putPublishDate( releasedArtifact, releaseDate );
+        return releaseDate;
+    }
+
+    private InvocationRequest buildInvokerRequest( MavenProject releasedProject, File siteMavenHome )
+        throws MojoFailureException
+    {
+        if ( !DEPLOY_MODE_FULL.equals( deployMode ) && !DEPLOY_MODE_INCREMENTAL.equals( deployMode ) )
+        {
+            throw new MojoFailureException( "Unsupported deployMode: " + deployMode );
+        }
+
+        InvocationRequest request = new DefaultInvocationRequest();
+        // a full deployment is done by site:deploy afterwards, so the generated pages can be adjusted first, unless
+        // there's nothing to adjust, see isPostProcessingRequired
+        request.setGoals( Collections.singletonList( "site" ) );
+        request.setPomFile( releasedProject.getFile() );
+        request.setShowErrors( true );
+        request.setUserSettingsFile( settingsFile );
+        String threads = siteThreads;
+
+        if ( arguments != null )
+        {
+            try
+            {
+                String[] args = CommandLineUtils.translateCommandline( arguments );
+                CLIManager cliManager = new CLIManager();
+                CommandLine cl = cliManager.parse( args );
+                request.setDebug( cl.hasOption( CLIManager.DEBUG ) );
+
+                // ----------------------------------------------------------------------
+                // Profile Activation
+                // ----------------------------------------------------------------------
+                List<String> profiles = new ArrayList<String>();
+
+                if ( cl.hasOption( CLIManager.ACTIVATE_PROFILES ) )
+                {
+                    String[] profileOptionValues = cl.getOptionValues( CLIManager.ACTIVATE_PROFILES );
+                    if ( profileOptionValues != null )
+                    {
+                        for ( String profileOptionValue : profileOptionValues )
+                        {
+                            StringTokenizer profileTokens = new StringTokenizer( profileOptionValue, "," );
+
+                            while ( profileTokens.hasMoreTokens() )
+                            {
+                                profiles.add( profileTokens.nextToken().trim() );
+                            }
+                        }
+                    }
+                    request.setProfiles( profiles );
+                }
+
+                if ( cl.hasOption( CLIManager.SET_SYSTEM_PROPERTY ) )
+                {
+                    Properties userProperties = new Properties();
+                    String[] defStrs = cl.getOptionValues( CLIManager.SET_SYSTEM_PROPERTY );
+        
+                    if ( defStrs != null )
+                    {
+                        for ( String defStr : defStrs )
+                        {
+                            setCliProperty( defStr, userProperties );
+                        }
+                    }
+                    request.setProperties( userProperties );
+                }
+
+                if ( cl.hasOption( CLIManager.THREADS ) )
+                {
+                    threads = cl.getOptionValue( CLIManager.THREADS );
+                }
+            }
+            catch ( ParseException e )
+            {
+                throw new MojoFailureException( "Unsupported option: " + e.getMessage() );
+            }
+            catch ( Exception e )
+            {
+                throw new MojoFailureException( e.getMessage() );
+            }
+        }
+
+        if ( StringUtils.isNotEmpty( threads ) )
+        {
+            String mavenVersion = getSiteMavenVersion( siteMavenHome );
+            if ( mavenVersion != null && new DefaultArtifactVersion( mavenVersion ).getMajorVersion() < 3 )
+            {
+                getLog().warn( "Maven " + mavenVersion + " can't generate the site with several threads" );
+            }
+            else
+            {
+                request.setThreads( threads );
+                if ( !isFullDeploy() && !releasedProject.getModules().isEmpty() )
+                {
+                    // the module sites are generated in parallel, stage them to get a single site
+                    request.setGoals( Arrays.asList( new String[] { "site", "site:stage" } ) );
+                }
+            }
+        }
+
+        if ( isIncrementalDeploy() && !releasedProject.getModules().isEmpty() )
+        {
+            // deploy the sites of all modules at once
+            request.setGoals( Arrays.asList( new String[] { "site", "site:stage" } ) );
+        }
+
+        if ( isStagingRequired() && !releasedProject.getModules().isEmpty()
+            && !request.getGoals().contains( "site:stage" ) )
+        {
+            List<String> goals = new ArrayList<String>( request.getGoals() );
+            goals.add( "site:stage" );
+            request.setGoals( goals );
+        }
+        return request;
+    }
+
+    /**
+     * @return {@code true} if the sites of the modules must be staged into a single site
+     */
+    protected boolean isStagingRequired()
+    {
+        return false;
+    }
+
+    /**
+     * Whether the generated site has to be processed before it's deployed, which needs a separate
+     * <code>site:deploy</code> after the site generation. Otherwise a full deployment runs a single
+     * <code>site-deploy</code>, so the released project is only loaded once.
+     */
+    private boolean isPostProcessingRequired( MavenProject releasedProject, List<Locale> locales, Date releaseDate )
+        throws MojoExecutionException
+    {
+        if ( verify )
+        {
+            return true;
+        }
+        // the publish date is only rewritten if it's known
+        return ( releaseDate != null || publishDate != null ) && !isPublishDateSupported( releasedProject, locales );
+    }
+
+    /**
+     * Whether the skin renders the publish date of the merged site descriptor, see the table of the usage page, so the
+     * pages don't have to be rewritten. Other skins may come with their own template, their pages are rewritten.
+     */
+    private boolean isPublishDateSupported( MavenProject releasedProject, List<Locale> locales )
+        throws MojoExecutionException
+    {
+        ArtifactVersion sitePluginVersion = getSitePluginVersion( releasedProject );
+        for ( Locale locale : locales )
+        {
+            Skin skin;
+            try
+            {
+                skin = resolvedCurrentModels.get( locale ).getSkin();
+            }
+            catch ( ExecutionException e )
+            {
+                return false;
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while resolving the site descriptor" );
+            }
+
+            if ( skin == null || !MAVEN_SKINS_GROUP_ID.equals( skin.getGroupId() ) )
+            {
+                return false;
+            }
+
+            String supportedSince;
+            if ( "maven-fluido-skin".equals( skin.getArtifactId() ) )
+            {
+                supportedSince = "1.1";
+            }
+            else if ( "maven-stylus-skin".equals( skin.getArtifactId() ) )
+            {
+                supportedSince = "1.4";
+            }
+            else
+            {
+                // the other Maven skins are rendered by Doxia Sitetools, which supports it since maven-site-plugin 3.1
+                if ( sitePluginVersion == null
+                    || sitePluginVersion.compareTo( new DefaultArtifactVersion( "3.1" ) ) < 0 )
+                {
+                    return false;
+                }
+                continue;
+            }
+
+            // without a version the latest skin is used
+            if ( skin.getVersion() != null && new DefaultArtifactVersion( skin.getVersion() )
+                .compareTo( new DefaultArtifactVersion( supportedSince ) ) < 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isFullDeploy()
+    {
+        return siteDeploy && DEPLOY_MODE_FULL.equals( deployMode );
+    }
+
+    private boolean isIncrementalDeploy()
+    {
+        return siteDeploy && DEPLOY_MODE_INCREMENTAL.equals( deployMode );
+    }
+
+    /**
+     * Deploy only the files of the generated site which changed since the previous deployment of the released
+     * version. The site of a multi-module release has been staged, so all modules are deployed at once.
+     */
+    private void deployIncrementally( Artifact releasedArtifact, MavenProject releasedProject )
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( releasedProject.getDistributionManagement() == null
+            || releasedProject.getDistributionManagement().getSite() == null
+            || releasedProject.getDistributionManagement().getSite().getUrl() == null )
+        {
+            throw new MojoFailureException( "Missing site information in the distribution management of "
+                + releasedArtifact.getVersion() );
+        }
+        Site site = releasedProject.getDistributionManagement().getSite();
+
+        File siteDirectory = getSiteOutputDirectory( releasedProject );
+        if ( !releasedProject.getModules().isEmpty() )
+        {
+            siteDirectory = new File( siteDirectory.getParentFile(), "staging" );
+        }
+
+        try
+        {
+            Properties manifest = IncrementalSiteDeployer.createManifest( siteDirectory );
+            Properties deployedManifest = getReleaseCache().getSiteManifest( releasedArtifact, site.getUrl() );
+            if ( deployedManifest == null )
+            {
+                deployedManifest = new Properties();
+            }
+
+            new IncrementalSiteDeployer( wagonManager, getLog() ).deploy( siteDirectory, manifest, deployedManifest,
+                                                                          site.getId(), site.getUrl() );
+            getReleaseCache().putSiteManifest( releasedArtifact, site.getUrl(), manifest );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @param siteMavenHome the Maven installation which generates the site, {@code null} for the running Maven
+     * @return the version of the Maven which generates the site
+     */
+    private String getSiteMavenVersion( File siteMavenHome )
+    {
+        if ( siteMavenHome == null )
+        {
+            return SelectorUtils.getMavenVersion();
+        }
+        else
+        {
+            return getMavenInstallations().getVersion( siteMavenHome );
+        }
+    }
+
+    private DecorationModel readDecorationModel( DecorationXpp3Reader reader, File currentSiteXml )
+        throws IOException, XmlPullParserException
+    {
+        DecorationModel currentModel;
+        FileInputStream fileInputStream = new FileInputStream( currentSiteXml );
+        try
+        {
+            currentModel = reader.read( fileInputStream, false );
+        }
+        finally
+        {
+            IOUtil.close( fileInputStream );
+        }
+        return currentModel;
+    }
+
+    /**
+     * Select the Maven which generates the site of the released version, since the maven-site-plugin is not compatible
+     * with every Maven version. If the Maven of {@code mavenHome} isn't compatible, the compatible Maven installation
+     * with the highest version is picked from the {@code mavenHomes} and {@code mavenHomesDirectory}.
+     * 
+     * @param releasedProject the released project
+     * @return the Maven installation, {@code null} for the running Maven
+     * @throws MojoFailureException if no compatible Maven installation is available
+     */
+    private File selectMavenHome( MavenProject releasedProject )
+        throws MojoFailureException
+    {
+        // MOJO-1825: verify site-plugin-version with maven-version
+        ArtifactVersion sitePluginVersion = getSitePluginVersion( releasedProject );
+        if ( sitePluginVersion == null )
+        {
+            return mavenHome;
+        }
+
+        String requiredMavenVersion;
+        VersionRange requiredMavenVersions;
+        try
+        {
+            if ( VersionRange.createFromVersionSpec( "(,3.0-alpha-1)" ).containsVersion( sitePluginVersion ) )
+            {
+                requiredMavenVersion = "2.x";
+                requiredMavenVersions = VersionRange.createFromVersionSpec( "(,3.0)" );
+            }
+            else if ( VersionRange.createFromVersionSpec( "[3.0-alpha-1,3.0)" ).containsVersion( sitePluginVersion ) )
+            {
+                requiredMavenVersion = "3.x+";
+                requiredMavenVersions = VersionRange.createFromVersionSpec( "[3.0,)" );
+            }
+            else
+            {
+                return mavenHome;
+            }
+        }
+        catch ( InvalidVersionSpecificationException e )
+        {
+            throw new MojoFailureException( e.getMessage() );
+        }
+
+        String mavenVersion = getSiteMavenVersion( mavenHome );
+        if ( mavenVersion == null
+            || requiredMavenVersions.containsVersion( new DefaultArtifactVersion( mavenVersion ) ) )
+        {
+            return mavenHome;
+        }
+
+        File compatibleMavenHome = getMavenInstallations().find( requiredMavenVersions );
+        if ( compatibleMavenHome == null )
+        {
+            throw new MojoFailureException( "maven-site-plugin:" + sitePluginVersion
+                + " can only be executed with Maven " + requiredMavenVersion );
+        }
+        getLog().info( "Using Maven " + getMavenInstallations().getVersion( compatibleMavenHome ) + " at "
+                           + compatibleMavenHome + " for maven-site-plugin:" + sitePluginVersion );
+        return compatibleMavenHome;
+    }
+
+    private Xpp3Dom getSitePluginConfiguration( MavenProject releasedProject )
+    {
+        Plugin sitePlugin = (Plugin) releasedProject.getBuild().getPluginsAsMap().get( MAVEN_SITE_PLUGIN_KEY );
+        if ( sitePlugin == null && releasedProject.getBuild().getPluginManagement() != null )
+        {
+            sitePlugin =
+                (Plugin) releasedProject.getBuild().getPluginManagement().getPluginsAsMap().get( MAVEN_SITE_PLUGIN_KEY );
+        }
+        return sitePlugin == null ? null : (Xpp3Dom) sitePlugin.getConfiguration();
+    }
+
+    private List<Locale> getLocales( MavenProject mavenProject )
+    {
+        Xpp3Dom releasedConfig = getSitePluginConfiguration( mavenProject );
+        String releasedLocales =
+            ( releasedConfig == null || releasedConfig.getChild( "locales" ) == null ? null
+                            : releasedConfig.getChild( "locales" ).getValue() );
+        return siteTool.getAvailableLocales( releasedLocales );
+    }
+
+    /**
+     * Read the released pom from the repository, or from the cache. Only the scm and site parts are needed, the
+     * project is built by the site generation.
+     */
+    private MavenProject resolveExternalProject( Artifact releasedArtifact )
+        throws MojoExecutionException
+    {
+        Model cachedModel = offlineFirst ? getReleaseCache().getModel( releasedArtifact ) : null;
+        if ( cachedModel != null )
+        {
+            getLog().debug( "Using cached pom of " + releasedArtifact.getVersion() );
+            return new MavenProject( cachedModel );
+        }
+
+        try
+        {
+            MavenProject externalProject =
+                new MavenProject( getPomModelReader().readFromRepository( releasedArtifact ) );
+            getReleaseCache().putModel( releasedArtifact, externalProject.getModel() );
+            return externalProject;
+        }
+        catch ( ProjectBuildingException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Wait for a stage of the pipeline, failing with the cause of its failure.
+     */
+    private static <T> T await( StagePipeline pipeline, Future<T> stage )
+        throws MojoExecutionException, MojoFailureException
+    {
+        try
+        {
+            return pipeline.await( stage );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while reskinning" );
+        }
+        catch ( Exception e )
+        {
+            rethrow( e );
+            return null;
+        }
+    }
+
+    /**
+     * Get the site descriptor inherited from the parents. The site tool builds the parents with the Maven2 project
+     * builder, which keeps its caches in unsynchronized maps, so every use of the builder holds its lock. The builder
+     * resolves the parents with the shared artifact resolver, which isn't thread-safe either, so its lock is held
+     * too, always after the lock of the builder.
+     */
+    private DecorationModel getDecorationModel( MavenProject project, List<MavenProject> projects,
+                                                String siteDirectory, Locale locale )
+        throws SiteToolException
+    {
+        synchronized ( mavenProjectBuilder )
+        {
+            synchronized ( resolver )
+            {
+                return siteTool.getDecorationModel( project, projects, localRepository, remoteRepositories,
+                                                    siteDirectory, locale, getInputEncoding(), getOutputEncoding() );
+            }
+        }
+    }
+
+    /**
+     * Resolve the site descriptors of the current project, which are shared by all reskinned versions, and its skin
+     * into the local repository. Failures are reported when the site descriptors are merged.
+     */
+    private void resolveCurrentSiteDescriptors( List<Locale> locales )
+        throws InterruptedException
+    {
+        for ( Locale locale : locales )
+        {
+            try
+            {
+                DecorationModel resolvedCurrentModel = resolvedCurrentModels.get( locale );
+                currentModels.get( locale );
+                if ( resolvedCurrentModel.getSkin() != null )
+                {
+                    // the site tool resolves the skin with the shared resolver, which isn't thread-safe
+                    synchronized ( resolver )
+                    {
+                        siteTool.getSkinArtifactFromRepository( localRepository, remoteRepositories,
+                                                                resolvedCurrentModel );
+                    }
+                }
+            }
+            catch ( SiteToolException e )
+            {
+                getLog().debug( "Unable to resolve the skin: " + e.getMessage() );
+            }
+            catch ( ExecutionException e )
+            {
+                getLog().debug( "Unable to resolve the site descriptor for " + locale + ": "
+                                    + e.getCause().getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Wait until the parents and their site descriptors have been prefetched, so they aren't resolved twice at the
+     * same time. A failed prefetch is harmless, they're resolved again when needed.
+     */
+    private void waitForPrefetch( Future<Integer> prefetch )
+        throws MojoExecutionException
+    {
+        try
+        {
+            getLog().debug( "Prefetched " + prefetch.get() + " site descriptors of the parents" );
+        }
+        catch ( ExecutionException e )
+        {
+            getLog().debug( "Unable to prefetch the parents: " + e.getCause().getMessage() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while prefetching the parents" );
+        }
+    }
+
+    private String getSiteDirectory( Xpp3Dom sitePluginConfiguration )
+    {
+        return sitePluginConfiguration == null || sitePluginConfiguration.getChild( "siteDirectory" ) == null ? "src/site"
+                        : sitePluginConfiguration.getChild( "siteDirectory" ).getValue();
+    }
+
+    private ArtifactVersion getSitePluginVersion( MavenProject releasedProject )
+    {
+        ArtifactVersion sitePluginVersion = null;
+        Plugin sitePlugin = (Plugin) releasedProject.getBuild().getPluginsAsMap().get( MAVEN_SITE_PLUGIN_KEY );
+        if ( sitePlugin == null && releasedProject.getBuild().getPluginManagement() != null )
+        {
+            sitePlugin =
+                (Plugin) releasedProject.getBuild().getPluginManagement().getPluginsAsMap().get( MAVEN_SITE_PLUGIN_KEY );
+        }
+
+        if ( sitePlugin != null && sitePlugin.getVersion() != null )
+        {
+            sitePluginVersion = new DefaultArtifactVersion( sitePlugin.getVersion() );
+        }
+        return sitePluginVersion;
+    }
+
+    private String getConnection( MavenProject mavenProject )
+        throws MojoFailureException
+    {
+        if ( mavenProject.getScm() == null )
+        {
+            throw new MojoFailureException( "SCM is not set in your pom.xml." );
+        }
+
+        String connection = mavenProject.getScm().getConnection();
+
+        if ( connection != null )
+        {
+            if ( connection.length() > 0 )
+            {
+                return connection;
+            }
+        }
+        connection = mavenProject.getScm().getDeveloperConnection();
+
+        if ( StringUtils.isEmpty( connection ) )
+        {
+            throw new MojoFailureException( "SCM Connection is not set in your pom.xml." );
+        }
+        return connection;
+    }
+
+    /**
+     * Resolve the most recent released version within the version range.
+     * 
+     * @param versionSpec the version range
+     * @return the artifact of the released version, its version is {@code null} if there's no such version
+     * @throws MojoFailureException if the version range is invalid
+     * @throws MojoExecutionException if the available versions can't be retrieved
+     */
+    protected Artifact resolveArtifact( String versionSpec )
+        throws MojoFailureException, MojoExecutionException
+    {
+        // Find the previous version JAR and resolve it, and it's dependencies
+        VersionRange range;
+        try
+        {
+            range = VersionRange.createFromVersionSpec( versionSpec );
+        }
+        catch ( InvalidVersionSpecificationException e )
+        {
+            throw new MojoFailureException( "Invalid comparison version: " + e.getMessage() );
+        }
+
+        Artifact previousArtifact;
+        try
+        {
+            previousArtifact =
+                factory.createDependencyArtifact( currentProject.getGroupId(), currentProject.getArtifactId(), range,
+                                                  currentProject.getPackaging(), null, Artifact.SCOPE_COMPILE );
+
+            if ( !previousArtifact.getVersionRange().isSelectedVersionKnown( previousArtifact ) )
+            {
+                getLog().debug( "Searching for versions in range: " + previousArtifact.getVersionRange() );
+                List<ArtifactVersion> availableVersions = retrieveAvailableVersions( previousArtifact );
+                filterSnapshots( availableVersions );
+                ArtifactVersion version = range.matchVersion( availableVersions );
+                if ( version != null )
+                {
+                    previousArtifact.selectVersion( version.toString() );
+                }
+            }
+
+        }
+        catch ( OverConstrainedVersionException e1 )
+        {
+            throw new MojoFailureException( "Invalid comparison version: " + e1.getMessage() );
+        }
+        catch ( ArtifactMetadataRetrievalException e11 )
+        {
+            throw new MojoExecutionException( "Error determining previous version: " + e11.getMessage(), e11 );
+        }
+
+        if ( previousArtifact.getVersion() == null )
+        {
+            getLog().info( "Unable to find a previous version of the project in the repository" );
+        }
+        else
+        {
+            getLog().debug( "Previous version: " + previousArtifact.getVersion() );
+        }
+
+        return previousArtifact;
+    }
+
+    /**
+     * Resolve all released versions within the version range.
+     * 
+     * @param versionSpec the version range
+     * @return the artifacts of the released versions, sorted from oldest to newest, never {@code null}
+     * @throws MojoFailureException if the version range is invalid
+     * @throws MojoExecutionException if the available versions can't be retrieved
+     */
+    protected List<Artifact> resolveArtifacts( String versionSpec )
+        throws MojoFailureException, MojoExecutionException
+    {
+        VersionRange range;
+        try
+        {
+            range = VersionRange.createFromVersionSpec( versionSpec );
+        }
+        catch ( InvalidVersionSpecificationException e )
+        {
+            throw new MojoFailureException( "Invalid version range: " + e.getMessage() );
+        }
+
+        List<ArtifactVersion> availableVersions;
+        try
+        {
+            Artifact rangeArtifact =
+                factory.createDependencyArtifact( currentProject.getGroupId(), currentProject.getArtifactId(), range,
+                                                  currentProject.getPackaging(), null, Artifact.SCOPE_COMPILE );
+
+            getLog().debug( "Searching for versions in range: " + range );
+            availableVersions = retrieveAvailableVersions( rangeArtifact );
+        }
+        catch ( ArtifactMetadataRetrievalException e )
+        {
+            throw new MojoExecutionException( "Error determining released versions: " + e.getMessage(), e );
+        }
+        filterSnapshots( availableVersions );
+        Collections.sort( availableVersions );
+
+        List<Artifact> releasedArtifacts = new ArrayList<Artifact>();
+        for ( ArtifactVersion version : availableVersions )
+        {
+            if ( range.containsVersion( version ) )
+            {
+                releasedArtifacts.add( factory.createDependencyArtifact( currentProject.getGroupId(),
+                                                                         currentProject.getArtifactId(),
+                                                                         VersionRange.createFromVersion( version.toString() ),
+                                                                         currentProject.getPackaging(), null,
+                                                                         Artifact.SCOPE_COMPILE ) );
+            }
+        }
+        return releasedArtifacts;
+    }
+
+    private List<ArtifactVersion> retrieveAvailableVersions( Artifact artifact )
+        throws ArtifactMetadataRetrievalException
+    {
+        List<ArtifactVersion> availableVersions = new ArrayList<ArtifactVersion>();
+
+        List<String> cachedVersions =
+            getReleaseCache().getVersions( artifact.getGroupId(), artifact.getArtifactId(),
+                                           versionsCacheTtl * 60L * 1000L );
+        if ( cachedVersions != null )
+        {
+            getLog().debug( "Using cached versions of " + artifact.getDependencyConflictId() );
+            for ( String cachedVersion : cachedVersions )
+            {
+                availableVersions.add( new DefaultArtifactVersion( cachedVersion ) );
+            }
+        }
+        else
+        {
+            @SuppressWarnings( "unchecked" )
+            List<ArtifactVersion> retrievedVersions =
+                metadataSource.retrieveAvailableVersions( artifact, localRepository,
+                                                          currentProject.getRemoteArtifactRepositories() );
+            availableVersions.addAll( retrievedVersions );
+            getReleaseCache().putVersions( artifact.getGroupId(), artifact.getArtifactId(), availableVersions );
+        }
+        return availableVersions;
+    }
+
+    /**
+     * Log the metrics of this execution and write them to the {@code metricsFile}.
+     */
+    protected void writeMetrics()
+    {
+        metrics.logSummary( getLog() );
+        try
+        {
+            metrics.write( metricsFile );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to write " + metricsFile + ": " + e.getMessage() );
+        }
+    }
+
+    private synchronized MavenInstallations getMavenInstallations()
+    {
+        if ( mavenInstallations == null )
+        {
+            mavenInstallations = new MavenInstallations( getReleaseCache(), getLog() );
+            if ( mavenHomes != null )
+            {
+                for ( File home : mavenHomes )
+                {
+                    mavenInstallations.add( home );
+                }
+            }
+            if ( mavenHomesDirectory != null )
+            {
+                mavenInstallations.discover( mavenHomesDirectory );
+            }
+        }
+        return mavenInstallations;
+    }
+
+    private synchronized PomModelReader getPomModelReader()
+    {
+        if ( pomModelReader == null )
+        {
+            pomModelReader = new PomModelReader( factory, resolver, localRepository, remoteRepositories, getLog() );
+        }
+        return pomModelReader;
+    }
+
+    private synchronized ParentPrefetcher getParentPrefetcher()
+    {
+        if ( parentPrefetcher == null )
+        {
+            parentPrefetcher = new ParentPrefetcher( factory, resolver, localRepository, remoteRepositories, getLog() );
+        }
+        return parentPrefetcher;
+    }
+
+    private synchronized ReleaseCache getReleaseCache()
+    {
+        if ( releaseCache == null )
+        {
+            releaseCache = new ReleaseCache( cacheDirectory, getLog() );
+        }
+        return releaseCache;
+    }
+
+    private void filterSnapshots( List<ArtifactVersion> versions )
+    {
+        for ( Iterator<ArtifactVersion> versionIterator = versions.iterator(); versionIterator.hasNext(); )
+        {
+            if ( "SNAPSHOT".equals( versionIterator.next().getQualifier() ) )
+            {
+                versionIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Calculate the files required to generate the site of the released project.
+     * 
+     * @param mavenProject the released project
+     * @return the comma separated include patterns
+     */
+    private String getSiteIncludes( MavenProject mavenProject )
+    {
+        Set<String> includes = new LinkedHashSet<String>();
+        includes.add( "**/pom.xml" );
+
+        // modules inherit the configuration of the maven-site-plugin
+        String siteDirectory = getSiteDirectory( getSitePluginConfiguration( mavenProject ) );
+        includes.add( "**/" + getRelativePath( mavenProject, siteDirectory, "src/site" ) + "/**" );
+
+        if ( mavenProject.getReporting() != null )
+        {
+            for ( Object reportPlugin : mavenProject.getReporting().getPlugins() )
+            {
+                if ( !POM_ONLY_REPORTS.contains( ( (ReportPlugin) reportPlugin ).getKey() ) )
+                {
+                    String sourceDirectory = mavenProject.getBuild().getSourceDirectory();
+                    includes.add( "**/" + getRelativePath( mavenProject, sourceDirectory, "src/main/java" ) + "/**" );
+                    break;
+                }
+            }
+        }
+        return StringUtils.join( includes.iterator(), "," );
+    }
+
+    private String getRelativePath( MavenProject mavenProject, String path, String defaultPath )
+    {
+        if ( path == null )
+        {
+            return defaultPath;
+        }
+
+        String relativePath = path.replace( '\\', '/' );
+        if ( relativePath.startsWith( "${basedir}/" ) )
+        {
+            relativePath = relativePath.substring( "${basedir}/".length() );
+        }
+        else if ( mavenProject.getBasedir() != null )
+        {
+            String basedir = mavenProject.getBasedir().getAbsolutePath().replace( '\\', '/' ) + '/';
+            if ( relativePath.startsWith( basedir ) )
+            {
+                relativePath = relativePath.substring( basedir.length() );
+            }
+        }
+        // e.g. a pom without basedir, like a cached one
+        return new File( relativePath ).isAbsolute() ? defaultPath : relativePath;
+    }
+
+    /**
+     * The tag to check out. Only git needs it, other providers have the tag already as part of the connection URL.
+     */
+    private String getTag( MavenProject mavenProject, String connection )
+        throws ScmException
+    {
+        String tag = mavenProject.getScm().getTag();
+        if ( "git".equals( ScmCommandExecutor.getProvider( connection ) ) && StringUtils.isNotEmpty( tag )
+            && !"HEAD".equals( tag ) )
+        {
+            return tag;
+        }
+        return null;
+    }
+
+    private Properties readCheckoutState( File checkoutDir )
+        throws IOException
+    {
+        return readProperties( new File( checkoutDir, CHECKOUT_STATE_FILENAME ) );
+    }
+
+    private static Properties readProperties( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        if ( file.exists() )
+        {
+            FileInputStream inputStream = new FileInputStream( file );
+            try
+            {
+                properties.load( inputStream );
+            }
+            finally
+            {
+                IOUtil.close( inputStream );
+            }
+        }
+        return properties;
+    }
+
+    private static void writeProperties( Properties properties, File file, String comments )
+        throws IOException
+    {
+        FileOutputStream outputStream = new FileOutputStream( file );
+        try
+        {
+            properties.store( outputStream, comments );
+        }
+        finally
+        {
+            IOUtil.close( outputStream );
+        }
+    }
+
+    private void fetchSources( File checkoutDir, MavenProject mavenProject, Artifact releasedArtifact,
+                               File releasedPom, SkinMetrics.Version versionMetrics )
+        throws MojoExecutionException, MojoFailureException
+    {
+        String includes = null;
+        if ( FETCH_MODE_SITE_ONLY.equals( fetchMode ) )
+        {
+            includes = getSiteIncludes( mavenProject );
+            getLog().debug( "Fetching only " + includes );
+        }
+        else if ( !FETCH_MODE_FULL.equals( fetchMode ) )
+        {
+            throw new MojoFailureException( "Unsupported fetchMode: " + fetchMode );
+        }
+
+        if ( !FETCH_STRATEGY_SCM.equals( fetchStrategy ) && !FETCH_STRATEGY_REPOSITORY.equals( fetchStrategy ) )
+        {
+            throw new MojoFailureException( "Unsupported fetchStrategy: " + fetchStrategy );
+        }
+
+        try
+        {
+            if ( forceCheckout && checkoutDir.exists() )
+            {
+                FileUtils.deleteDirectory( checkoutDir );
+            }
+
+            if ( FETCH_STRATEGY_REPOSITORY.equals( fetchStrategy )
+                && fetchFromRepository( checkoutDir, mavenProject, releasedArtifact, releasedPom, includes,
+                                        versionMetrics ) )
+            {
+                return;
+            }
+
+            String connection = getConnection( mavenProject );
+            if ( useMirror )
+            {
+                connection = new ScmMirror( mirrorDirectory, getLog() ).mirror( connection );
+            }
+            String tag = getTag( mavenProject, connection );
+
+            ScmCommandExecutor executor = new ScmCommandExecutor( scmManager, connection, getLog() );
+            if ( includes != null && !executor.isIncludesSupported() )
+            {
+                getLog().info( "The " + ScmCommandExecutor.getProvider( connection )
+                                   + " provider can't fetch only the site, fetching all sources" );
+                includes = null;
+            }
+
+            Properties state = readCheckoutState( checkoutDir );
+            if ( checkoutDir.exists() && !StringUtils.equals( includes, state.getProperty( "includes" ) ) )
+            {
+                // a working copy with only the site can't be updated to all sources and vice versa
+                getLog().info( checkoutDir + " doesn't contain the sources of fetchMode " + fetchMode );
+                FileUtils.deleteDirectory( checkoutDir );
+                state = new Properties();
+            }
+            boolean sameRevision =
+                connection.equals( state.getProperty( "connection" ) )
+                    && StringUtils.equals( tag, state.getProperty( "tag" ) );
+
+            if ( checkoutDir.mkdirs() )
+            {
+
+                getLog().info( "Performing checkout to " + checkoutDir );
+
+                includes = checkout( executor, connection, checkoutDir, includes, tag );
+            }
+            else if ( sameRevision && tag != null )
+            {
+                getLog().info( checkoutDir + " is already at " + tag );
+            }
+            else if ( sameRevision || ( state.isEmpty() && !executor.isSwitchSupported() ) )
+            {
+                getLog().info( "Performing update to " + checkoutDir );
+
+                executor.update( checkoutDir.getPath(), includes, null );
+            }
+            else
+            {
+                getLog().info( "Switching " + checkoutDir + " to " + ( tag == null ? connection : tag ) );
+
+                if ( !executor.switchTo( checkoutDir.getPath(), tag ) )
+                {
+                    getLog().info( "Performing checkout to " + checkoutDir );
+
+                    FileUtils.deleteDirectory( checkoutDir );
+                    checkoutDir.mkdirs();
+                    includes = checkout( executor, connection, checkoutDir, includes, tag );
+                }
+            }
+
+            state.setProperty( "connection", connection );
+            if ( tag != null )
+            {
+                state.setProperty( "tag", tag );
+            }
+            else
+            {
+                state.remove( "tag" );
+            }
+            setFetchedSources( state, includes );
+            String revision = executor.getRevision( checkoutDir.getPath() );
+            if ( revision != null )
+            {
+                state.setProperty( "revision", revision );
+            }
+            else
+            {
+                state.remove( "revision" );
+            }
+            writeProperties( state, new File( checkoutDir, CHECKOUT_STATE_FILENAME ), "siteskinner checkout state" );
+            versionMetrics.fetched( executor.getFetchedFiles(), executor.getFetchedBytes() );
+        }
+        catch ( Exception ex )
+        {
+            throw new MojoExecutionException( "checkout failed.", ex );
+        }
+    }
+    
+    /**
+     * Check out the sources into the empty {@code checkoutDir}, without the history if {@code shallowFetch} is set and
+     * supported by the connection. Git needs its native client to check out only the {@code includes}.
+     * 
+     * @return the includes which have been checked out, {@code null} if all sources have been checked out
+     */
+    private String checkout( ScmCommandExecutor executor, String connection, File checkoutDir, String includes,
+                             String tag )
+        throws ScmException
+    {
+        if ( ( shallowFetch || includes != null )
+            && executor.gitCheckout( checkoutDir.getPath(), includes, tag, shallowFetch ) )
+        {
+            return includes;
+        }
+
+        String checkoutIncludes = includes;
+        if ( checkoutIncludes != null && "git".equals( ScmCommandExecutor.getProvider( connection ) ) )
+        {
+            getLog().info( "Fetching all sources, the git provider ignores the includes" );
+            checkoutIncludes = null;
+        }
+        executor.checkout( checkoutDir.getPath(), checkoutIncludes, null, tag );
+        return checkoutIncludes;
+    }
+
+    /**
+     * Record which sources have been fetched in the checkout state, so a following run with another fetchMode fetches
+     * the sources again.
+     */
+    private void setFetchedSources( Properties state, String includes )
+    {
+        state.setProperty( "fetchMode", fetchMode );
+        if ( includes != null )
+        {
+            state.setProperty( "includes", includes );
+        }
+        else
+        {
+            state.remove( "includes" );
+        }
+    }
+
+    /**
+     * Extract the sources from an archive deployed with the released version. The archive is recorded as connection
+     * of the checkout state, so it's only extracted again if another version is fetched.
+     * 
+     * @return {@code true} if the sources have been fetched, {@code false} if there's no source archive
+     */
+    private boolean fetchFromRepository( File checkoutDir, MavenProject mavenProject, Artifact releasedArtifact,
+                                         File releasedPom, String includes, SkinMetrics.Version versionMetrics )
+        throws IOException
+    {
+        SourceArchiveFetcher fetcher =
+            new SourceArchiveFetcher( factory, resolver, localRepository, remoteRepositories, getLog() );
+        Artifact archive = fetcher.resolve( releasedArtifact );
+        if ( archive == null )
+        {
+            getLog().info( "No source archive of " + releasedArtifact.getVersion()
+                               + " found in the repository, checking out from SCM" );
+            return false;
+        }
+
+        String connection = "repository:" + archive.getId();
+        Properties previousState = readCheckoutState( checkoutDir );
+        if ( connection.equals( previousState.getProperty( "connection" ) )
+            && StringUtils.equals( includes, previousState.getProperty( "includes" ) ) )
+        {
+            getLog().info( checkoutDir + " already contains " + archive.getId() );
+            return true;
+        }
+
+        if ( checkoutDir.exists() )
+        {
+            FileUtils.deleteDirectory( checkoutDir );
+        }
+        checkoutDir.mkdirs();
+
+        getLog().info( "Extracting " + archive.getId() + " to " + checkoutDir );
+        int files = fetcher.extract( archive, checkoutDir, includes );
+        getLog().debug( "Extracted " + files + " files" );
+        versionMetrics.fetched( files, archive.getFile().length() );
+
+        File pomFile = new File( checkoutDir, "pom.xml" );
+        if ( !pomFile.exists() )
+        {
+            if ( releasedPom.exists() )
+            {
+                FileUtils.copyFile( releasedPom, pomFile );
+            }
+            else
+            {
+                Writer writer = WriterFactory.newXmlWriter( pomFile );
+                try
+                {
+                    new MavenXpp3Writer().write( writer, mavenProject.getModel() );
+                }
+                finally
+                {
+                    IOUtil.close( writer );
+                }
+            }
+        }
+
+        Properties state = new Properties();
+        state.setProperty( "connection", connection );
+        setFetchedSources( state, includes );
+        writeProperties( state, new File( checkoutDir, CHECKOUT_STATE_FILENAME ), "siteskinner checkout state" );
+        return true;
+    }
+
+    private static void setCliProperty( String property, Properties properties )
+    {
+        String name;
+
+        String value;
+
+        int i = property.indexOf( "=" );
+
+        if ( i <= 0 )
+        {
+            name = property.trim();
+
+            value = "true";
+        }
+        else
+        {
+            name = property.substring( 0, i ).trim();
+
+            value = property.substring( i + 1 );
+        }
+
+        properties.setProperty( name, value );
+    }
+}
\ No newline at end of file
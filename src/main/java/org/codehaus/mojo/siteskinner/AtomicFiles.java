@@ -0,0 +1,89 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Replaces files atomically, so a rewritten page is never missing or half written.
+ *
+ * @since 1.1
+ */
+final class AtomicFiles
+{
+    private AtomicFiles()
+    {
+    }
+
+    /**
+     * Replace the target by the source. Atomic moves are only supported by the JDK since Java 7, on older versions the
+     * source is renamed, which replaces the target atomically on most platforms, or the target is deleted first where
+     * renaming can't overwrite it.
+     *
+     * @param source the new content, written next to the target
+     * @param target the file to replace
+     * @throws IOException if the target can't be replaced
+     */
+    static void replace( File source, File target )
+        throws IOException
+    {
+        Class<?> files;
+        try
+        {
+            files = Class.forName( "java.nio.file.Files" );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            if ( !source.renameTo( target ) && !( target.delete() && source.renameTo( target ) ) )
+            {
+                throw new IOException( "Unable to replace " + target );
+            }
+            return;
+        }
+
+        try
+        {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            Class<?> copyOptionClass = Class.forName( "java.nio.file.CopyOption" );
+            Class<?> standardCopyOptionClass = Class.forName( "java.nio.file.StandardCopyOption" );
+            Object options = Array.newInstance( copyOptionClass, 2 );
+            Array.set( options, 0, standardCopyOptionClass.getField( "REPLACE_EXISTING" ).get( null ) );
+            Array.set( options, 1, standardCopyOptionClass.getField( "ATOMIC_MOVE" ).get( null ) );
+
+            Method toPath = File.class.getMethod( "toPath" );
+            files.getMethod( "move", pathClass, pathClass, options.getClass() ).invoke( null, toPath.invoke( source ),
+                                                                                        toPath.invoke( target ),
+                                                                                        options );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw (IOException) new IOException( "Unable to replace " + target + ": "
+                + e.getCause().getMessage() ).initCause( e.getCause() );
+        }
+        catch ( Exception e )
+        {
+            throw (IOException) new IOException( "Unable to replace " + target + ": " + e.getMessage() ).initCause( e );
+        }
+    }
+}
@@ -44,6 +44,8 @@ public class CLIManager
     public static final char DEBUG = 'X';
 
     public static final char ACTIVATE_PROFILES = 'P';
+
+    public static final char THREADS = 'T';
     
     private Options options;
 
@@ -54,6 +56,7 @@ public class CLIManager
         options.addOption( OptionBuilder.withLongOpt( "define" ).hasArg().create( SET_SYSTEM_PROPERTY ) );
         options.addOption( OptionBuilder.withLongOpt( "debug" ).create( DEBUG ) );
         options.addOption( OptionBuilder.withLongOpt( "activate-profiles" ).hasArg().create( ACTIVATE_PROFILES ) );
+        options.addOption( OptionBuilder.withLongOpt( "threads" ).hasArg().create( THREADS ) );
     }
 
     public CommandLine parse( String[] args )
@@ -0,0 +1,77 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * Executes native commands, like <code>git</code> or <code>svn</code>, for the cases not covered by the Maven SCM API.
+ * 
+ * @since 1.1
+ */
+public final class CommandLineExecutor
+{
+    private CommandLineExecutor()
+    {
+    }
+
+    /**
+     * Execute a command and wait for it to finish.
+     * 
+     * @param workingDirectory the directory to execute the command in, may be {@code null}
+     * @param log the mojo logger
+     * @param executable the command to execute
+     * @param args the arguments of the command
+     * @return the output of the command
+     * @throws CommandLineException if the command can't be executed or finishes with a non-zero exit code
+     */
+    public static String execute( File workingDirectory, Log log, String executable, String... args )
+        throws CommandLineException
+    {
+        Commandline cl = new Commandline();
+        cl.setExecutable( executable );
+        cl.addArguments( args );
+        if ( workingDirectory != null )
+        {
+            cl.setWorkingDirectory( workingDirectory );
+        }
+
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( "Executing: " + cl );
+        }
+
+        CommandLineUtils.StringStreamConsumer stdout = new CommandLineUtils.StringStreamConsumer();
+        CommandLineUtils.StringStreamConsumer stderr = new CommandLineUtils.StringStreamConsumer();
+
+        int exitCode = CommandLineUtils.executeCommandLine( cl, stdout, stderr );
+        if ( exitCode != 0 )
+        {
+            throw new CommandLineException( "'" + cl + "' failed with exit code " + exitCode + ": "
+                + stderr.getOutput() );
+        }
+        return stdout.getOutput();
+    }
+}
@@ -0,0 +1,116 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * MD5 digests as hexadecimal strings, used to identify content by a short and stable name.
+ *
+ * @since 1.1
+ */
+final class Digests
+{
+    private Digests()
+    {
+    }
+
+    /**
+     * @param bytes the content
+     * @return the MD5 digest of the content
+     */
+    static String md5( byte[] bytes )
+    {
+        MessageDigest md5 = newMd5();
+        return toHex( md5.digest( bytes ) );
+    }
+
+    /**
+     * @param text the content, encoded as UTF-8
+     * @return the MD5 digest of the content
+     */
+    static String md5( String text )
+    {
+        try
+        {
+            return md5( text.getBytes( "UTF-8" ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    /**
+     * @param file the file, which is streamed
+     * @return the MD5 digest of the content of the file
+     * @throws IOException if the file can't be read
+     */
+    static String md5( File file )
+        throws IOException
+    {
+        MessageDigest md5 = newMd5();
+        InputStream inputStream = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = inputStream.read( buffer ) ) >= 0 )
+            {
+                md5.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtil.close( inputStream );
+        }
+        return toHex( md5.digest() );
+    }
+
+    static MessageDigest newMd5()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "MD5" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    static String toHex( byte[] digest )
+    {
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : digest )
+        {
+            hex.append( Integer.toHexString( ( b & 0xFF ) | 0x100 ).substring( 1 ) );
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,189 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes the <code>MavenCli</code> of a Maven 3.x installation within the current JVM. The classes of the
+ * installation are loaded by an isolated classloader, which is kept for the lifetime of the JVM, so successive builds
+ * don't have to load them again.
+ * <p>
+ * Only depends on the JDK, so it can be used outside of a Maven build as well.
+ * </p>
+ *
+ * @since 1.1
+ */
+final class EmbeddedMaven
+{
+    private static final String MAVEN_CLI = "org.apache.maven.cli.MavenCli";
+
+    private static final String MULTI_MODULE_PROJECT_DIRECTORY = "maven.multiModuleProjectDirectory";
+
+    /**
+     * The classloaders per Maven installation. Also serves as lock: the MavenCli replaces the system streams and
+     * properties, so only one build can be executed at a time.
+     */
+    private static final Map<File, ClassLoader> CLASS_LOADERS = new HashMap<File, ClassLoader>();
+
+    private EmbeddedMaven()
+    {
+    }
+
+    /**
+     * Verify if the Maven installation can be embedded.
+     *
+     * @param mavenHome the Maven installation
+     * @return {@code true} if the installation contains a Maven 3.x <code>MavenCli</code>, otherwise {@code false}
+     */
+    static boolean isSupported( File mavenHome )
+    {
+        try
+        {
+            synchronized ( CLASS_LOADERS )
+            {
+                getMainMethod( getClassLoader( mavenHome ) );
+            }
+            return true;
+        }
+        catch ( Exception e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Execute a Maven build.
+     *
+     * @param mavenHome the Maven installation
+     * @param args the command line arguments
+     * @param workingDirectory the directory to execute the build in
+     * @param out the stream for the standard output of the build
+     * @param err the stream for the error output of the build
+     * @return the exit code of the build
+     * @throws Exception if the Maven installation can't be executed
+     */
+    static int execute( File mavenHome, String[] args, File workingDirectory, PrintStream out, PrintStream err )
+        throws Exception
+    {
+        synchronized ( CLASS_LOADERS )
+        {
+            ClassLoader classLoader = getClassLoader( mavenHome );
+            Method doMain = getMainMethod( classLoader );
+
+            Thread thread = Thread.currentThread();
+            ClassLoader originalClassLoader = thread.getContextClassLoader();
+            String originalMultiModuleProjectDirectory = System.getProperty( MULTI_MODULE_PROJECT_DIRECTORY );
+            try
+            {
+                thread.setContextClassLoader( classLoader );
+                // required since Maven 3.3.1, otherwise the build fails
+                System.setProperty( MULTI_MODULE_PROJECT_DIRECTORY, workingDirectory.getAbsolutePath() );
+
+                Object cli = doMain.getDeclaringClass().newInstance();
+                Integer exitCode =
+                    (Integer) doMain.invoke( cli, new Object[] { args, workingDirectory.getAbsolutePath(), out, err } );
+                return exitCode.intValue();
+            }
+            catch ( InvocationTargetException e )
+            {
+                if ( e.getCause() instanceof Exception )
+                {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            finally
+            {
+                if ( originalMultiModuleProjectDirectory == null )
+                {
+                    System.getProperties().remove( MULTI_MODULE_PROJECT_DIRECTORY );
+                }
+                else
+                {
+                    System.setProperty( MULTI_MODULE_PROJECT_DIRECTORY, originalMultiModuleProjectDirectory );
+                }
+                thread.setContextClassLoader( originalClassLoader );
+            }
+        }
+    }
+
+    private static Method getMainMethod( ClassLoader classLoader )
+        throws ClassNotFoundException, NoSuchMethodException
+    {
+        return classLoader.loadClass( MAVEN_CLI ).getMethod( "doMain", new Class[] { String[].class, String.class,
+            PrintStream.class, PrintStream.class } );
+    }
+
+    private static ClassLoader getClassLoader( File mavenHome )
+        throws IOException
+    {
+        File home = mavenHome.getCanonicalFile();
+        ClassLoader classLoader = CLASS_LOADERS.get( home );
+        if ( classLoader == null )
+        {
+            List<URL> urls = new ArrayList<URL>();
+            addJars( new File( home, "boot" ), urls );
+            addJars( new File( home, "lib" ), urls );
+            addJars( new File( home, "lib/ext" ), urls );
+            if ( urls.isEmpty() )
+            {
+                throw new IOException( home + " is not a Maven installation" );
+            }
+
+            // the parent must not see the classes of the running Maven or this plugin
+            classLoader =
+                new URLClassLoader( urls.toArray( new URL[urls.size()] ), ClassLoader.getSystemClassLoader().getParent() );
+            CLASS_LOADERS.put( home, classLoader );
+        }
+        return classLoader;
+    }
+
+    private static void addJars( File directory, List<URL> urls )
+        throws IOException
+    {
+        File[] jars = directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.isFile() && file.getName().endsWith( ".jar" );
+            }
+        } );
+
+        if ( jars != null )
+        {
+            for ( File jar : jars )
+            {
+                urls.add( jar.toURI().toURL() );
+            }
+        }
+    }
+}
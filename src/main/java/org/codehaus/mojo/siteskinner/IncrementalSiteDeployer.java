@@ -0,0 +1,174 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.artifact.manager.WagonManager;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Deploys only the files of a site which changed since the last deployment, based on a manifest with the digest of
+ * every deployed file. Files which no longer exist are removed from <code>file://</code> sites; other protocols don't
+ * support deleting files.
+ *
+ * @since 1.1
+ */
+class IncrementalSiteDeployer
+{
+    private final WagonManager wagonManager;
+
+    private final Log log;
+
+    IncrementalSiteDeployer( WagonManager wagonManager, Log log )
+    {
+        this.wagonManager = wagonManager;
+        this.log = log;
+    }
+
+    /**
+     * Create the manifest of a generated site.
+     *
+     * @param siteDirectory the generated site
+     * @return the digest per relative path of every file
+     * @throws IOException if a file can't be read
+     */
+    static Properties createManifest( File siteDirectory )
+        throws IOException
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir( siteDirectory );
+        scanner.scan();
+
+        Properties manifest = new Properties();
+        for ( String path : scanner.getIncludedFiles() )
+        {
+            manifest.setProperty( path.replace( '\\', '/' ), Digests.md5( new File( siteDirectory, path ) ) );
+        }
+        return manifest;
+    }
+
+    /**
+     * Deploy the differences between the generated and the deployed site.
+     *
+     * @param siteDirectory the generated site
+     * @param manifest the manifest of the generated site
+     * @param deployedManifest the manifest of the deployed site, empty if the site hasn't been deployed before
+     * @param id the id of the server, used for the authentication
+     * @param url the URL of the site
+     * @throws IOException if the site can't be deployed
+     */
+    void deploy( File siteDirectory, Properties manifest, Properties deployedManifest, String id, String url )
+        throws IOException
+    {
+        List<String> changed = new ArrayList<String>();
+        for ( Object path : manifest.keySet() )
+        {
+            if ( !manifest.get( path ).equals( deployedManifest.get( path ) ) )
+            {
+                changed.add( (String) path );
+            }
+        }
+
+        List<String> removed = new ArrayList<String>();
+        for ( Object path : deployedManifest.keySet() )
+        {
+            if ( !manifest.containsKey( path ) )
+            {
+                removed.add( (String) path );
+            }
+        }
+
+        log.info( "Deploying " + changed.size() + " of " + manifest.size() + " files to " + url + ", removing "
+            + removed.size() + " files" );
+
+        Repository repository = new Repository( id, url );
+        if ( "file".equals( repository.getProtocol() ) )
+        {
+            deployToFileSystem( siteDirectory, new File( repository.getBasedir() ), changed, removed );
+        }
+        else
+        {
+            deployByWagon( siteDirectory, repository, changed, removed );
+        }
+    }
+
+    private void deployToFileSystem( File siteDirectory, File targetDirectory, List<String> changed,
+                                     List<String> removed )
+        throws IOException
+    {
+        for ( String path : changed )
+        {
+            FileUtils.copyFile( new File( siteDirectory, path ), new File( targetDirectory, path ) );
+        }
+        for ( String path : removed )
+        {
+            File file = new File( targetDirectory, path );
+            if ( file.exists() && !file.delete() )
+            {
+                throw new IOException( "Unable to remove " + file );
+            }
+        }
+    }
+
+    private void deployByWagon( File siteDirectory, Repository repository, List<String> changed, List<String> removed )
+        throws IOException
+    {
+        if ( !removed.isEmpty() )
+        {
+            log.warn( "Files can't be removed over " + repository.getProtocol() + ", keeping " + removed.size()
+                + " files which are no longer part of the site" );
+        }
+
+        try
+        {
+            Wagon wagon = wagonManager.getWagon( repository );
+            wagon.connect( repository, wagonManager.getAuthenticationInfo( repository.getId() ),
+                           wagonManager.getProxy( repository.getProtocol() ) );
+            try
+            {
+                for ( String path : changed )
+                {
+                    wagon.put( new File( siteDirectory, path ), path );
+                }
+            }
+            finally
+            {
+                wagon.disconnect();
+            }
+        }
+        catch ( WagonException e )
+        {
+            IOException ioException =
+                new IOException( "Unable to deploy to " + repository.getUrl() + ": " + e.getMessage() );
+            ioException.initCause( e );
+            throw ioException;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+
+/**
+ * Passes every line written to this stream to an {@link InvocationOutputHandler}, like the output of a forked Maven.
+ * While the handler consumes a line, everything written to this stream by the handler itself goes to the fallback
+ * stream, so a handler which logs to the replaced <code>System.out</code> doesn't loop.
+ *
+ * @since 1.1
+ */
+class LineOutputStream
+    extends OutputStream
+{
+    private final InvocationOutputHandler handler;
+
+    private final OutputStream fallback;
+
+    private final String encoding;
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    private boolean consuming;
+
+    LineOutputStream( InvocationOutputHandler handler, OutputStream fallback, String encoding )
+    {
+        this.handler = handler;
+        this.fallback = fallback;
+        this.encoding = encoding;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void write( int b )
+        throws IOException
+    {
+        if ( consuming )
+        {
+            fallback.write( b );
+        }
+        else if ( b == '\n' )
+        {
+            consumeLine();
+        }
+        else if ( b != '\r' )
+        {
+            line.write( b );
+        }
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void flush()
+        throws IOException
+    {
+        if ( consuming )
+        {
+            fallback.flush();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void close()
+        throws IOException
+    {
+        if ( line.size() > 0 )
+        {
+            consumeLine();
+        }
+    }
+
+    private void consumeLine()
+        throws IOException
+    {
+        String text = line.toString( encoding );
+        line.reset();
+
+        consuming = true;
+        try
+        {
+            handler.consumeLine( text );
+        }
+        finally
+        {
+            consuming = false;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Registry of the local Maven installations, either configured or discovered as the subdirectories of a directory.
+ * Determining the version of an installation means scanning the jars of its <code>lib</code> directory, so the
+ * versions are indexed once and cached by the path and the modification time of that directory.
+ *
+ * @since 1.1
+ */
+class MavenInstallations
+{
+    /**
+     * The versions already determined by this JVM, by the key of the installation
+     */
+    private static final Map<String, String> VERSIONS = new HashMap<String, String>();
+
+    private final Set<File> installations = new LinkedHashSet<File>();
+
+    private final ReleaseCache releaseCache;
+
+    private final Log log;
+
+    private Properties index;
+
+    /**
+     * @param releaseCache the cache to keep the index of the versions in
+     * @param log the mojo logger
+     */
+    MavenInstallations( ReleaseCache releaseCache, Log log )
+    {
+        this.releaseCache = releaseCache;
+        this.log = log;
+    }
+
+    /**
+     * Register a Maven installation.
+     *
+     * @param mavenHome the Maven installation
+     */
+    synchronized void add( File mavenHome )
+    {
+        if ( isMavenHome( mavenHome ) )
+        {
+            installations.add( getCanonicalFile( mavenHome ) );
+        }
+        else
+        {
+            log.warn( mavenHome + " is not a Maven installation" );
+        }
+    }
+
+    /**
+     * Register every Maven installation in a directory, like the one the Maven distributions are unpacked in.
+     *
+     * @param directory the directory containing the Maven installations
+     */
+    synchronized void discover( File directory )
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            log.warn( "Unable to discover Maven installations in " + directory );
+            return;
+        }
+
+        for ( File file : files )
+        {
+            if ( isMavenHome( file ) )
+            {
+                installations.add( getCanonicalFile( file ) );
+            }
+        }
+    }
+
+    /**
+     * Get the version of a Maven installation, which doesn't have to be registered.
+     *
+     * @param mavenHome the Maven installation
+     * @return the Maven version, or {@code null} if it can't be determined
+     */
+    synchronized String getVersion( File mavenHome )
+    {
+        File home = getCanonicalFile( mavenHome );
+        String key = home.getPath() + '@' + new File( home, "lib" ).lastModified();
+
+        String version;
+        synchronized ( VERSIONS )
+        {
+            version = VERSIONS.get( key );
+        }
+        if ( version != null )
+        {
+            return version;
+        }
+
+        if ( index == null )
+        {
+            index = releaseCache.getMavenInstallations();
+            if ( index == null )
+            {
+                index = new Properties();
+            }
+        }
+
+        version = index.getProperty( key );
+        if ( version == null )
+        {
+            version = SelectorUtils.getMavenVersion( home );
+            if ( version == null )
+            {
+                return null;
+            }
+            log.debug( "Indexed Maven " + version + " at " + home );
+
+            // an updated installation has a new key, drop the old one
+            for ( Object indexed : new ArrayList<Object>( index.keySet() ) )
+            {
+                if ( indexed.toString().startsWith( home.getPath() + '@' ) )
+                {
+                    index.remove( indexed );
+                }
+            }
+            index.setProperty( key, version );
+            releaseCache.putMavenInstallations( index );
+        }
+
+        synchronized ( VERSIONS )
+        {
+            VERSIONS.put( key, version );
+        }
+        return version;
+    }
+
+    /**
+     * Find the registered Maven installation with the highest version within a range.
+     *
+     * @param range the accepted Maven versions
+     * @return the Maven installation, or {@code null} if no registered installation matches
+     */
+    synchronized File find( VersionRange range )
+    {
+        File found = null;
+        ArtifactVersion foundVersion = null;
+        for ( File installation : installations )
+        {
+            String version = getVersion( installation );
+            if ( version == null )
+            {
+                continue;
+            }
+
+            ArtifactVersion artifactVersion = new DefaultArtifactVersion( version );
+            if ( range.containsVersion( artifactVersion )
+                && ( foundVersion == null || artifactVersion.compareTo( foundVersion ) > 0 ) )
+            {
+                found = installation;
+                foundVersion = artifactVersion;
+            }
+        }
+        return found;
+    }
+
+    private static boolean isMavenHome( File file )
+    {
+        return new File( file, "lib" ).isDirectory() && new File( file, "bin" ).isDirectory();
+    }
+
+    private static File getCanonicalFile( File file )
+    {
+        try
+        {
+            return file.getCanonicalFile();
+        }
+        catch ( IOException e )
+        {
+            return file.getAbsoluteFile();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Computes a value only once per key, even if it is requested by several threads at the same time. Failed
+ * computations aren't kept, e.g. one which has been interrupted because its stage was cancelled, so the next request
+ * computes the value again.
+ * 
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ * @since 1.1
+ */
+abstract class Memoizer<K, V>
+{
+    private final Map<K, FutureTask<V>> values = new HashMap<K, FutureTask<V>>();
+
+    /**
+     * Get the value for the {@code key}, computing it if this is the first request.
+     * 
+     * @param key the key
+     * @return the value
+     * @throws ExecutionException if the computation failed, the requests waiting for it fail as well
+     * @throws InterruptedException if the thread was interrupted while waiting for another thread to compute the
+     *             value
+     */
+    public V get( final K key )
+        throws ExecutionException, InterruptedException
+    {
+        FutureTask<V> value;
+        boolean compute = false;
+        synchronized ( values )
+        {
+            value = values.get( key );
+            if ( value == null )
+            {
+                value = new FutureTask<V>( new Callable<V>()
+                {
+                    public V call()
+                        throws Exception
+                    {
+                        return compute( key );
+                    }
+                } );
+                values.put( key, value );
+                compute = true;
+            }
+        }
+
+        if ( compute )
+        {
+            value.run();
+        }
+
+        try
+        {
+            return value.get();
+        }
+        catch ( ExecutionException e )
+        {
+            forget( key, value );
+            throw e;
+        }
+    }
+
+    private void forget( K key, FutureTask<V> value )
+    {
+        synchronized ( values )
+        {
+            if ( values.get( key ) == value )
+            {
+                values.remove( key );
+            }
+        }
+    }
+
+    /**
+     * Compute the value for the {@code key}.
+     * 
+     * @param key the key
+     * @return the value
+     * @throws Exception if the value can't be computed
+     */
+    protected abstract V compute( K key )
+        throws Exception;
+}
@@ -0,0 +1,289 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Resolves the poms of the parents of a project and their site descriptors for every locale into the local
+ * repository, before the site descriptors are resolved and the site is generated. A parent is only known once the pom
+ * of its child has been resolved, but the site descriptors of a parent are resolved while the chain is followed up,
+ * and the chains of several projects are followed at the same time. The project builders and the site tool then only
+ * read local files. Every artifact is resolved once, even if it's shared by several reskinned versions.
+ * <p>
+ * The Maven2 artifact resolver isn't thread-safe: its wagon manager shares the wagons and transfer listeners of a
+ * repository and the local repository metadata is written without locking. So every use of the resolver holds its
+ * lock, here and everywhere else the siteskinner resolves artifacts, and the downloads are done one at a time. The
+ * prefetch still pays off, because it runs in the background while the sources are checked out.
+ *
+ * @since 1.1
+ */
+class ParentPrefetcher
+{
+    /**
+     * The number of chains followed at the same time, their downloads are serialized by the lock of the resolver.
+     */
+    private static final int THREADS = 8;
+
+    private final ArtifactFactory factory;
+
+    private final ArtifactResolver resolver;
+
+    private final ArtifactRepository localRepository;
+
+    private final List<ArtifactRepository> remoteRepositories;
+
+    private final Log log;
+
+    /**
+     * The parent of a pom by its <code>groupId:artifactId:version</code>, {@code null} for the top of the chain
+     */
+    private final Memoizer<String, Parent> parents = new Memoizer<String, Parent>()
+    {
+        protected Parent compute( String key )
+            throws Exception
+        {
+            String[] coordinates = key.split( ":" );
+            Artifact pomArtifact = factory.createProjectArtifact( coordinates[0], coordinates[1], coordinates[2] );
+            synchronized ( resolver )
+            {
+                resolver.resolve( pomArtifact, remoteRepositories, localRepository );
+            }
+
+            Reader reader = ReaderFactory.newXmlReader( pomArtifact.getFile() );
+            try
+            {
+                return new MavenXpp3Reader().read( reader, false ).getParent();
+            }
+            finally
+            {
+                IOUtil.close( reader );
+            }
+        }
+    };
+
+    /**
+     * Whether a site descriptor, by its <code>groupId:artifactId:version:classifier</code>, has been resolved
+     */
+    private final Memoizer<String, Boolean> siteDescriptors = new Memoizer<String, Boolean>()
+    {
+        protected Boolean compute( String key )
+            throws Exception
+        {
+            String[] coordinates = key.split( ":" );
+            Artifact siteDescriptor =
+                factory.createArtifactWithClassifier( coordinates[0], coordinates[1], coordinates[2], "xml",
+                                                      coordinates[3] );
+            try
+            {
+                synchronized ( resolver )
+                {
+                    resolver.resolve( siteDescriptor, remoteRepositories, localRepository );
+                }
+                return Boolean.TRUE;
+            }
+            catch ( ArtifactNotFoundException e )
+            {
+                return Boolean.FALSE;
+            }
+        }
+    };
+
+    ParentPrefetcher( ArtifactFactory factory, ArtifactResolver resolver, ArtifactRepository localRepository,
+                      List<ArtifactRepository> remoteRepositories, Log log )
+    {
+        this.factory = factory;
+        this.resolver = resolver;
+        this.localRepository = localRepository;
+        this.remoteRepositories = remoteRepositories;
+        this.log = log;
+    }
+
+    /**
+     * Start resolving the parents of the projects and their site descriptors in the background.
+     *
+     * @param projectParents the direct parents of the projects, {@code null} entries are skipped
+     * @param locales the locales of the site descriptors
+     * @return the number of resolved site descriptors, once all parents have been resolved
+     */
+    Future<Integer> start( final List<Parent> projectParents, final List<Locale> locales )
+    {
+        FutureTask<Integer> prefetch = new FutureTask<Integer>( new Callable<Integer>()
+        {
+            public Integer call()
+                throws Exception
+            {
+                return Integer.valueOf( prefetch( projectParents, locales ) );
+            }
+        } );
+
+        Thread thread = new Thread( prefetch, "siteskinner-prefetch" );
+        thread.setDaemon( true );
+        thread.start();
+        return prefetch;
+    }
+
+    private int prefetch( List<Parent> projectParents, List<Locale> locales )
+        throws InterruptedException
+    {
+        Set<String> classifiers = new LinkedHashSet<String>();
+        classifiers.add( "site" );
+        for ( Locale locale : locales )
+        {
+            classifiers.add( "site_" + locale.getLanguage() );
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        try
+        {
+            final List<Future<Boolean>> downloads = new ArrayList<Future<Boolean>>();
+            List<Future<?>> chains = new ArrayList<Future<?>>();
+            for ( final Parent projectParent : projectParents )
+            {
+                if ( projectParent != null )
+                {
+                    chains.add( executor.submit( new ChainWalker( projectParent, classifiers, downloads, executor ) ) );
+                }
+            }
+
+            for ( Future<?> chain : chains )
+            {
+                waitFor( chain );
+            }
+
+            // all chains are done, so no more downloads are added
+            int resolved = 0;
+            for ( Future<Boolean> download : downloads )
+            {
+                if ( Boolean.TRUE.equals( waitFor( download ) ) )
+                {
+                    resolved++;
+                }
+            }
+            return resolved;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Failures are only logged, the parent or site descriptor is resolved again when it's needed and fails there.
+     */
+    private <T> T waitFor( Future<T> future )
+        throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( ExecutionException e )
+        {
+            log.debug( "Unable to prefetch: " + e.getCause().getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Follows a parent chain up, starting the downloads of the site descriptors of every parent.
+     */
+    private class ChainWalker
+        implements Runnable
+    {
+        private final Parent first;
+
+        private final Set<String> classifiers;
+
+        private final List<Future<Boolean>> downloads;
+
+        private final ExecutorService executor;
+
+        ChainWalker( Parent first, Set<String> classifiers, List<Future<Boolean>> downloads,
+                     ExecutorService executor )
+        {
+            this.first = first;
+            this.classifiers = classifiers;
+            this.downloads = downloads;
+            this.executor = executor;
+        }
+
+        public void run()
+        {
+            Parent parent = first;
+            while ( parent != null )
+            {
+                final String key = parent.getGroupId() + ':' + parent.getArtifactId() + ':' + parent.getVersion();
+                for ( final String classifier : classifiers )
+                {
+                    Future<Boolean> download = executor.submit( new Callable<Boolean>()
+                    {
+                        public Boolean call()
+                            throws Exception
+                        {
+                            return siteDescriptors.get( key + ':' + classifier );
+                        }
+                    } );
+                    synchronized ( downloads )
+                    {
+                        downloads.add( download );
+                    }
+                }
+
+                try
+                {
+                    parent = parents.get( key );
+                }
+                catch ( ExecutionException e )
+                {
+                    log.debug( "Unable to prefetch the parent " + key + ": " + e.getCause().getMessage() );
+                    parent = null;
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    parent = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.DistributionManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.model.ReportPlugin;
+import org.apache.maven.model.Reporting;
+import org.apache.maven.model.Scm;
+import org.apache.maven.model.Site;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.ProjectBuildingException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomUtils;
+
+/**
+ * Reads the pom of a released version without building the project. Only the parts the siteskinner needs are
+ * inherited from the parents: the SCM connection, the site distribution, the build and report plugins with their
+ * configuration, the source and output directories and the properties. The plugin management is applied to the build
+ * plugins and the result is interpolated like the model of a built project, but profiles aren't activated. The models
+ * of the parents are shared by all versions which are reskinned by the same execution.
+ *
+ * @since 1.1
+ */
+class PomModelReader
+{
+    private static final Pattern EXPRESSION = Pattern.compile( "\\$\\{([^}]+)\\}" );
+
+    private final ArtifactFactory factory;
+
+    private final ArtifactResolver resolver;
+
+    private final ArtifactRepository localRepository;
+
+    private final List<ArtifactRepository> remoteRepositories;
+
+    private final Log log;
+
+    /**
+     * The uninterpolated models including the inherited parts, by the path of their pom
+     */
+    private final Memoizer<File, Model> inheritedModels = new Memoizer<File, Model>()
+    {
+        protected Model compute( File pomFile )
+            throws Exception
+        {
+            return readInherited( pomFile );
+        }
+    };
+
+    PomModelReader( ArtifactFactory factory, ArtifactResolver resolver, ArtifactRepository localRepository,
+                    List<ArtifactRepository> remoteRepositories, Log log )
+    {
+        this.factory = factory;
+        this.resolver = resolver;
+        this.localRepository = localRepository;
+        this.remoteRepositories = remoteRepositories;
+        this.log = log;
+    }
+
+    /**
+     * Read the pom of a released version from the repository. It has no basedir, so <code>${basedir}</code> isn't
+     * interpolated.
+     *
+     * @param releasedArtifact the artifact of the released version
+     * @return the model, which may be changed by the caller
+     * @throws ProjectBuildingException if the pom or one of its parents can't be resolved or read
+     */
+    Model readFromRepository( Artifact releasedArtifact )
+        throws ProjectBuildingException
+    {
+        File pomFile =
+            resolve( releasedArtifact.getGroupId(), releasedArtifact.getArtifactId(), releasedArtifact.getVersion() );
+        return injectPluginManagement( interpolate( getInheritedModel( pomFile ), null ) );
+    }
+
+    /**
+     * Read a checked out pom. Its parents are looked up by their <code>relativePath</code> first.
+     *
+     * @param pomFile the pom
+     * @return the model, which may be changed by the caller
+     * @throws ProjectBuildingException if the pom or one of its parents can't be resolved or read
+     */
+    Model read( File pomFile )
+        throws ProjectBuildingException
+    {
+        return injectPluginManagement( interpolate( getInheritedModel( pomFile ),
+                                                    pomFile.getAbsoluteFile().getParentFile() ) );
+    }
+
+    private Model getInheritedModel( File pomFile )
+        throws ProjectBuildingException
+    {
+        try
+        {
+            return inheritedModels.get( pomFile.getCanonicalFile() );
+        }
+        catch ( IOException e )
+        {
+            throw new ProjectBuildingException( pomFile.getPath(), e.getMessage(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof ProjectBuildingException )
+            {
+                throw (ProjectBuildingException) e.getCause();
+            }
+            throw new ProjectBuildingException( pomFile.getPath(), e.getCause().getMessage(), e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ProjectBuildingException( pomFile.getPath(), "Interrupted while reading the pom" );
+        }
+    }
+
+    private Model readInherited( File pomFile )
+        throws ProjectBuildingException
+    {
+        Model model = readModel( pomFile );
+        Parent parent = model.getParent();
+        if ( parent == null )
+        {
+            return model;
+        }
+
+        if ( model.getGroupId() == null )
+        {
+            model.setGroupId( parent.getGroupId() );
+        }
+        if ( model.getVersion() == null )
+        {
+            model.setVersion( parent.getVersion() );
+        }
+
+        Model parentModel = getInheritedModel( getParentPomFile( pomFile, parent ) );
+        inherit( model, parentModel );
+        return model;
+    }
+
+    /**
+     * The pom of the parent: by its <code>relativePath</code> if the pom isn't in the local repository and the pom at
+     * that path is the parent, otherwise from the repository.
+     */
+    private File getParentPomFile( File pomFile, Parent parent )
+        throws ProjectBuildingException
+    {
+        String repositoryPath = new File( localRepository.getBasedir() ).getAbsolutePath();
+        if ( !pomFile.getAbsolutePath().startsWith( repositoryPath ) )
+        {
+            String relativePath = parent.getRelativePath() == null ? "../pom.xml" : parent.getRelativePath();
+            File parentPomFile = new File( pomFile.getParentFile(), relativePath );
+            if ( parentPomFile.isDirectory() )
+            {
+                parentPomFile = new File( parentPomFile, "pom.xml" );
+            }
+
+            if ( parentPomFile.isFile() )
+            {
+                Model parentModel = getInheritedModel( parentPomFile );
+                if ( parent.getArtifactId().equals( parentModel.getArtifactId() )
+                    && parent.getGroupId().equals( parentModel.getGroupId() )
+                    && parent.getVersion().equals( parentModel.getVersion() ) )
+                {
+                    return parentPomFile;
+                }
+                log.debug( parentPomFile + " is not the parent " + parent.getId() );
+            }
+        }
+        return resolve( parent.getGroupId(), parent.getArtifactId(), parent.getVersion() );
+    }
+
+    private File resolve( String groupId, String artifactId, String version )
+        throws ProjectBuildingException
+    {
+        Artifact pomArtifact = factory.createProjectArtifact( groupId, artifactId, version );
+        try
+        {
+            // the resolver isn't thread-safe, see ParentPrefetcher
+            synchronized ( resolver )
+            {
+                resolver.resolve( pomArtifact, remoteRepositories, localRepository );
+            }
+        }
+        catch ( Exception e )
+        {
+            throw new ProjectBuildingException( pomArtifact.getId(), "Unable to resolve the pom of "
+                + pomArtifact.getId() + ": " + e.getMessage(), e );
+        }
+        return pomArtifact.getFile();
+    }
+
+    private static Model readModel( File pomFile )
+        throws ProjectBuildingException
+    {
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newXmlReader( pomFile );
+            return new MavenXpp3Reader().read( reader, false );
+        }
+        catch ( Exception e )
+        {
+            throw new ProjectBuildingException( pomFile.getPath(), "Unable to read " + pomFile + ": "
+                + e.getMessage(), e );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * Inherit the parts of the parent which the siteskinner reads. The parent model is shared, so its parts are
+     * copied.
+     */
+    private static void inherit( Model model, Model parentModel )
+    {
+        if ( model.getName() == null )
+        {
+            model.setName( parentModel.getName() );
+        }
+
+        Properties properties = new Properties();
+        properties.putAll( parentModel.getProperties() );
+        properties.putAll( model.getProperties() );
+        model.setProperties( properties );
+
+        String childPath = '/' + model.getArtifactId();
+        model.setScm( inheritScm( model.getScm(), parentModel.getScm(), childPath ) );
+
+        Site parentSite =
+            parentModel.getDistributionManagement() == null ? null : parentModel.getDistributionManagement().getSite();
+        if ( parentSite != null )
+        {
+            if ( model.getDistributionManagement() == null )
+            {
+                model.setDistributionManagement( new DistributionManagement() );
+            }
+            Site site = model.getDistributionManagement().getSite();
+            if ( site == null )
+            {
+                site = new Site();
+                site.setId( parentSite.getId() );
+                site.setName( parentSite.getName() );
+                site.setUrl( appendPath( parentSite.getUrl(), childPath ) );
+                model.getDistributionManagement().setSite( site );
+            }
+        }
+
+        Build parentBuild = parentModel.getBuild();
+        if ( parentBuild != null )
+        {
+            if ( model.getBuild() == null )
+            {
+                model.setBuild( new Build() );
+            }
+            Build build = model.getBuild();
+            if ( build.getDirectory() == null )
+            {
+                build.setDirectory( parentBuild.getDirectory() );
+            }
+            if ( build.getSourceDirectory() == null )
+            {
+                build.setSourceDirectory( parentBuild.getSourceDirectory() );
+            }
+            inheritPlugins( build.getPlugins(), parentBuild.getPlugins(), true );
+
+            if ( parentBuild.getPluginManagement() != null )
+            {
+                if ( build.getPluginManagement() == null )
+                {
+                    build.setPluginManagement( new PluginManagement() );
+                }
+                inheritPlugins( build.getPluginManagement().getPlugins(),
+                                parentBuild.getPluginManagement().getPlugins(), false );
+            }
+        }
+
+        Reporting parentReporting = parentModel.getReporting();
+        if ( parentReporting != null )
+        {
+            if ( model.getReporting() == null )
+            {
+                model.setReporting( new Reporting() );
+            }
+            Reporting reporting = model.getReporting();
+            if ( reporting.getOutputDirectory() == null )
+            {
+                reporting.setOutputDirectory( parentReporting.getOutputDirectory() );
+            }
+            inheritReportPlugins( reporting.getPlugins(), parentReporting.getPlugins() );
+        }
+    }
+
+    private static Scm inheritScm( Scm scm, Scm parentScm, String childPath )
+    {
+        if ( parentScm == null )
+        {
+            return scm;
+        }
+
+        Scm inherited = scm == null ? new Scm() : scm;
+        if ( inherited.getConnection() == null )
+        {
+            inherited.setConnection( appendPath( parentScm.getConnection(), childPath ) );
+        }
+        if ( inherited.getDeveloperConnection() == null )
+        {
+            inherited.setDeveloperConnection( appendPath( parentScm.getDeveloperConnection(), childPath ) );
+        }
+        if ( inherited.getUrl() == null )
+        {
+            inherited.setUrl( appendPath( parentScm.getUrl(), childPath ) );
+        }
+        if ( scm == null || "HEAD".equals( inherited.getTag() ) )
+        {
+            inherited.setTag( parentScm.getTag() );
+        }
+        return inherited;
+    }
+
+    private static String appendPath( String url, String childPath )
+    {
+        if ( url == null )
+        {
+            return null;
+        }
+        return url.endsWith( "/" ) ? url + childPath.substring( 1 ) : url + childPath;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static void inheritPlugins( List plugins, List parentPlugins, boolean applyInherited )
+    {
+        Map<String, Plugin> pluginsByKey = new HashMap<String, Plugin>();
+        for ( Object plugin : plugins )
+        {
+            pluginsByKey.put( ( (Plugin) plugin ).getKey(), (Plugin) plugin );
+        }
+
+        for ( Object parent : parentPlugins )
+        {
+            Plugin parentPlugin = (Plugin) parent;
+            if ( applyInherited && "false".equals( parentPlugin.getInherited() ) )
+            {
+                continue;
+            }
+
+            Plugin plugin = pluginsByKey.get( parentPlugin.getKey() );
+            if ( plugin == null )
+            {
+                plugin = new Plugin();
+                plugin.setGroupId( parentPlugin.getGroupId() );
+                plugin.setArtifactId( parentPlugin.getArtifactId() );
+                plugins.add( plugin );
+            }
+            if ( plugin.getVersion() == null )
+            {
+                plugin.setVersion( parentPlugin.getVersion() );
+            }
+            plugin.setConfiguration( mergeConfiguration( plugin.getConfiguration(), parentPlugin.getConfiguration() ) );
+        }
+    }
+
+    /**
+     * Apply the managed version and configuration, own or inherited, to the plugins of the build, like Maven does
+     * after the inheritance. The configuration of the plugin itself wins.
+     */
+    private static Model injectPluginManagement( Model model )
+    {
+        Build build = model.getBuild();
+        if ( build == null || build.getPluginManagement() == null )
+        {
+            return model;
+        }
+
+        Map<?, ?> managedPlugins = build.getPluginManagement().getPluginsAsMap();
+        for ( Object plugin : build.getPlugins() )
+        {
+            Plugin buildPlugin = (Plugin) plugin;
+            Plugin managedPlugin = (Plugin) managedPlugins.get( buildPlugin.getKey() );
+            if ( managedPlugin == null )
+            {
+                continue;
+            }
+
+            if ( buildPlugin.getVersion() == null )
+            {
+                buildPlugin.setVersion( managedPlugin.getVersion() );
+            }
+            buildPlugin.setConfiguration( mergeConfiguration( buildPlugin.getConfiguration(),
+                                                              managedPlugin.getConfiguration() ) );
+        }
+        return model;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static void inheritReportPlugins( List reportPlugins, List parentReportPlugins )
+    {
+        Map<String, ReportPlugin> pluginsByKey = new HashMap<String, ReportPlugin>();
+        for ( Object plugin : reportPlugins )
+        {
+            pluginsByKey.put( ( (ReportPlugin) plugin ).getKey(), (ReportPlugin) plugin );
+        }
+
+        for ( Object parent : parentReportPlugins )
+        {
+            ReportPlugin parentPlugin = (ReportPlugin) parent;
+            if ( "false".equals( parentPlugin.getInherited() ) )
+            {
+                continue;
+            }
+
+            ReportPlugin plugin = pluginsByKey.get( parentPlugin.getKey() );
+            if ( plugin == null )
+            {
+                plugin = new ReportPlugin();
+                plugin.setGroupId( parentPlugin.getGroupId() );
+                plugin.setArtifactId( parentPlugin.getArtifactId() );
+                reportPlugins.add( plugin );
+            }
+            if ( plugin.getVersion() == null )
+            {
+                plugin.setVersion( parentPlugin.getVersion() );
+            }
+            plugin.setConfiguration( mergeConfiguration( plugin.getConfiguration(), parentPlugin.getConfiguration() ) );
+        }
+    }
+
+    private static Object mergeConfiguration( Object configuration, Object parentConfiguration )
+    {
+        if ( parentConfiguration == null )
+        {
+            return configuration;
+        }
+        Xpp3Dom parentDom = new Xpp3Dom( (Xpp3Dom) parentConfiguration );
+        return configuration == null ? parentDom : Xpp3DomUtils.mergeXpp3Dom( (Xpp3Dom) configuration, parentDom );
+    }
+
+    /**
+     * Interpolate the expressions in a copy of the model, through its serialized form like Maven 2 does.
+     */
+    private static Model interpolate( Model model, File basedir )
+        throws ProjectBuildingException
+    {
+        try
+        {
+            StringWriter writer = new StringWriter();
+            new MavenXpp3Writer().write( writer, model );
+
+            Matcher matcher = EXPRESSION.matcher( writer.toString() );
+            StringBuffer interpolated = new StringBuffer();
+            while ( matcher.find() )
+            {
+                String value = evaluate( matcher.group( 1 ), model, basedir );
+                matcher.appendReplacement( interpolated,
+                                           Matcher.quoteReplacement( value == null ? matcher.group()
+                                                           : escapeXml( value ) ) );
+            }
+            matcher.appendTail( interpolated );
+
+            return new MavenXpp3Reader().read( new StringReader( interpolated.toString() ), false );
+        }
+        catch ( Exception e )
+        {
+            throw new ProjectBuildingException( model.getId(), "Unable to interpolate the pom of " + model.getId()
+                + ": " + e.getMessage(), e );
+        }
+    }
+
+    private static String evaluate( String expression, Model model, File basedir )
+    {
+        String property = expression;
+        if ( property.startsWith( "project." ) || property.startsWith( "pom." ) )
+        {
+            property = property.substring( property.indexOf( '.' ) + 1 );
+            if ( "groupId".equals( property ) )
+            {
+                return model.getGroupId();
+            }
+            else if ( "artifactId".equals( property ) )
+            {
+                return model.getArtifactId();
+            }
+            else if ( "version".equals( property ) )
+            {
+                return model.getVersion();
+            }
+            else if ( "name".equals( property ) )
+            {
+                return model.getName();
+            }
+            else if ( "packaging".equals( property ) )
+            {
+                return model.getPackaging();
+            }
+            else if ( "build.directory".equals( property ) )
+            {
+                String directory = model.getBuild() == null ? null : model.getBuild().getDirectory();
+                if ( directory == null )
+                {
+                    return basedir == null ? null : new File( basedir, "target" ).getPath();
+                }
+                return directory;
+            }
+        }
+
+        if ( "basedir".equals( property ) )
+        {
+            return basedir == null ? null : basedir.getPath();
+        }
+
+        String value = model.getProperties().getProperty( expression );
+        return value == null ? System.getProperty( expression ) : value;
+    }
+
+    private static String escapeXml( String value )
+    {
+        return value.replace( "&", "&amp;" ).replace( "<", "&lt;" ).replace( ">", "&gt;" );
+    }
+}
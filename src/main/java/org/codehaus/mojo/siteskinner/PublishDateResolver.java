@@ -0,0 +1,268 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.scm.ScmException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Resolves the date a version has been released. The cheap sources are tried first:
+ * <ol>
+ * <li>the <code>lastUpdated</code> of the <code>maven-metadata.xml</code> downloaded from a remote repository, if the
+ * version is the latest release</li>
+ * <li>the modification date of the released pom, if it has just been downloaded</li>
+ * <li>the date of the last commit of the checked out tag</li>
+ * <li>the released artifact, which has to be downloaded again</li>
+ * </ol>
+ * The first two are tried by {@link #resolveFromRepository(Artifact, File, long)}, while the sources are still being
+ * checked out, the others by {@link #resolveFromSources(Artifact, ScmCommandExecutor, File, String)}.
+ * 
+ * @since 1.1
+ */
+public class PublishDateResolver
+{
+    private final ArtifactResolver resolver;
+
+    private final ArtifactRepository localRepository;
+
+    private final List<ArtifactRepository> remoteRepositories;
+
+    private final Log log;
+
+    /**
+     * The constructor.
+     * 
+     * @param resolver the artifact resolver
+     * @param localRepository the local repository
+     * @param remoteRepositories the remote repositories
+     * @param log the mojo logger
+     */
+    public PublishDateResolver( ArtifactResolver resolver, ArtifactRepository localRepository,
+                                List<ArtifactRepository> remoteRepositories, Log log )
+    {
+        this.resolver = resolver;
+
+        this.localRepository = localRepository;
+
+        this.remoteRepositories = remoteRepositories;
+
+        this.log = log;
+    }
+
+    /**
+     * Resolve the release date of the {@code releasedArtifact} from the sources which don't need the checked out
+     * sources, i.e. the <code>maven-metadata.xml</code> and the released pom.
+     * 
+     * @param releasedArtifact the released artifact
+     * @param releasedPom the released pom in the local repository
+     * @param preResolveDate the moment just before the released pom has been downloaded, or {@code -1} if it was
+     *            already available in the local repository
+     * @return the release date, or {@code null} if it couldn't be determined from these sources
+     */
+    public Date resolveFromRepository( Artifact releasedArtifact, File releasedPom, long preResolveDate )
+    {
+        Date releaseDate = resolveFromMetadata( releasedArtifact );
+        if ( releaseDate != null )
+        {
+            return releaseDate;
+        }
+
+        // we can assume that the ArtifactResolver changed the lastModified value
+        if ( preResolveDate >= 0 && releasedPom.exists() && releasedPom.lastModified() < preResolveDate )
+        {
+            log.debug( "Using the lastModified of the released pom as publishDate" );
+            return new Date( releasedPom.lastModified() );
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the release date of the {@code releasedArtifact} from the checked out sources, or else the released
+     * artifact.
+     * 
+     * @param releasedArtifact the released artifact
+     * @param scmExecutor the executor for the connection of the checked out sources
+     * @param checkoutDirectory the directory containing the checked out sources
+     * @param tag the checked out tag, may be {@code null}
+     * @return the release date, or {@code null} if it couldn't be determined
+     * @throws MojoExecutionException if the released artifact can't be resolved
+     */
+    public Date resolveFromSources( Artifact releasedArtifact, ScmCommandExecutor scmExecutor,
+                                    File checkoutDirectory, String tag )
+        throws MojoExecutionException
+    {
+        Date releaseDate = null;
+        try
+        {
+            releaseDate = scmExecutor.getLastCommitDate( checkoutDirectory.getPath(), tag );
+        }
+        catch ( ScmException e )
+        {
+            log.debug( e.getMessage() );
+        }
+        if ( releaseDate != null )
+        {
+            log.debug( "Using the date of the last commit of the released sources as publishDate" );
+            return releaseDate;
+        }
+
+        log.debug( "Using the released artifact to determine the publishDate" );
+        return resolveFromArtifact( releasedArtifact );
+    }
+
+    private Date resolveFromMetadata( final Artifact releasedArtifact )
+    {
+        File artifactDirectory =
+            new File( localRepository.getBasedir(), releasedArtifact.getGroupId().replace( '.', '/' ) + '/'
+                + releasedArtifact.getArtifactId() );
+
+        File[] metadataFiles = artifactDirectory.listFiles( new FilenameFilter()
+        {
+            public boolean accept( File dir, String name )
+            {
+                // the metadata of a local install has the date of the install, not the one of the deployment
+                return name.startsWith( "maven-metadata-" ) && name.endsWith( ".xml" )
+                    && !name.equals( "maven-metadata-local.xml" );
+            }
+        } );
+
+        if ( metadataFiles == null )
+        {
+            return null;
+        }
+
+        SimpleDateFormat lastUpdatedFormat = new SimpleDateFormat( "yyyyMMddHHmmss" );
+        lastUpdatedFormat.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+
+        for ( File metadataFile : metadataFiles )
+        {
+            Reader reader = null;
+            try
+            {
+                reader = ReaderFactory.newXmlReader( metadataFile );
+                Metadata metadata = new MetadataXpp3Reader().read( reader, false );
+
+                Versioning versioning = metadata.getVersioning();
+
+                // the lastUpdated belongs to the most recent deployment
+                if ( versioning != null && versioning.getLastUpdated() != null
+                    && releasedArtifact.getVersion().equals( versioning.getRelease() ) )
+                {
+                    log.debug( "Using the lastUpdated of " + metadataFile.getName() + " as publishDate" );
+                    return lastUpdatedFormat.parse( versioning.getLastUpdated() );
+                }
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to read " + metadataFile + ": " + e.getMessage() );
+            }
+            catch ( XmlPullParserException e )
+            {
+                log.debug( "Unable to read " + metadataFile + ": " + e.getMessage() );
+            }
+            catch ( ParseException e )
+            {
+                log.debug( "Unable to read " + metadataFile + ": " + e.getMessage() );
+            }
+            finally
+            {
+                IOUtil.close( reader );
+            }
+        }
+        return null;
+    }
+
+    private Date resolveFromArtifact( Artifact releasedArtifact )
+        throws MojoExecutionException
+    {
+        long preResolveDate = System.currentTimeMillis();
+
+        try
+        {
+            // the resolver isn't thread-safe, see ParentPrefetcher
+            synchronized ( resolver )
+            {
+                resolver.resolveAlways( releasedArtifact, remoteRepositories, localRepository );
+            }
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+
+        if ( releasedArtifact.getFile().lastModified() < preResolveDate )
+        {
+            // we can assume that the ArtifactResolver changed the lastModified value
+            return new Date( releasedArtifact.getFile().lastModified() );
+        }
+        else if ( "pom".equals( releasedArtifact.getType() ) )
+        {
+            return null;
+        }
+
+        // Use the modified-date from the first entry of the jar as releaseDate
+        try
+        {
+            JarFile jarFile = new JarFile( releasedArtifact.getFile() );
+            try
+            {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                return entries.hasMoreElements() ? new Date( entries.nextElement().getTime() ) : null;
+            }
+            finally
+            {
+                jarFile.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage() );
+        }
+    }
+}
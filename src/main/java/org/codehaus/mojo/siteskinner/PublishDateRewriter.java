@@ -0,0 +1,249 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Replaces the date of the site generation by the publish date of the released version in the generated pages. Skins
+ * and Doxia versions which don't support the <code>custom/publishDate</code> of the site descriptor show the date of
+ * the generation in the publish date marker, e.g. <code>&lt;span id="publishDate"&gt;Last Published: ...</code>.
+ * Every page is streamed line by line, only a page with a marker is written to a temporary file, which replaces the
+ * page atomically.
+ * The pages are rewritten in parallel.
+ *
+ * @since 1.1
+ */
+class PublishDateRewriter
+{
+    /**
+     * The generated pages which never contain a publish date marker
+     */
+    private static final String EXCLUDES = "**/apidocs/**,**/testapidocs/**,**/xref/**,**/xref-test/**";
+
+    private final Map<String, String> replacements;
+
+    private final Pattern marker;
+
+    private final String encoding;
+
+    /**
+     * @param replacements the publish dates per date of the site generation, formatted
+     * @param encoding the encoding of the generated pages
+     */
+    PublishDateRewriter( Map<String, String> replacements, String encoding )
+    {
+        this.replacements = replacements;
+        this.encoding = encoding;
+
+        StringBuilder dates = new StringBuilder();
+        for ( String generationDate : replacements.keySet() )
+        {
+            dates.append( dates.length() == 0 ? "" : "|" ).append( Pattern.quote( generationDate ) );
+        }
+        marker = Pattern.compile( "(id=\"publishDate\"[^>]*>[^<]*?|Last Published:\\s*)(" + dates + ")" );
+    }
+
+    /**
+     * Rewrite the publish date of every generated page of a site.
+     *
+     * @param siteDirectory the directory containing the generated site
+     * @return the number of rewritten pages
+     * @throws IOException if a page can't be rewritten
+     */
+    int rewrite( File siteDirectory )
+        throws IOException
+    {
+        if ( replacements.isEmpty() || !siteDirectory.isDirectory() )
+        {
+            return 0;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        List<File> pages = FileUtils.getFiles( siteDirectory, "**/*.html", EXCLUDES );
+
+        ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+        try
+        {
+            List<Future<Boolean>> rewrites = new ArrayList<Future<Boolean>>();
+            for ( final File page : pages )
+            {
+                rewrites.add( executor.submit( new Callable<Boolean>()
+                {
+                    public Boolean call()
+                        throws IOException
+                    {
+                        return Boolean.valueOf( rewritePage( page ) );
+                    }
+                } ) );
+            }
+
+            int rewritten = 0;
+            for ( Future<Boolean> rewrite : rewrites )
+            {
+                if ( rewrite.get().booleanValue() )
+                {
+                    rewritten++;
+                }
+            }
+            return rewritten;
+        }
+        catch ( ExecutionException e )
+        {
+            throw (IOException) new IOException( e.getCause().getMessage() ).initCause( e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while rewriting the publish dates" );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return {@code true} if the page has been rewritten
+     */
+    private boolean rewritePage( File page )
+        throws IOException
+    {
+        File tmpPage = new File( page.getParentFile(), '.' + page.getName() + ".tmp" );
+
+        // the lines before the first marker, the temporary page is only written once a marker has been found
+        StringBuilder unchanged = new StringBuilder();
+        Writer writer = null;
+
+        FileChannel in = new FileInputStream( page ).getChannel();
+        try
+        {
+            Reader reader = Channels.newReader( in, encoding );
+
+            // the marker never spans several lines, so the page is rewritten per line
+            StringBuilder line = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ( ( read = reader.read( buffer ) ) >= 0 )
+            {
+                int lineStart = 0;
+                for ( int i = 0; i < read; i++ )
+                {
+                    if ( buffer[i] == '\n' )
+                    {
+                        line.append( buffer, lineStart, i + 1 - lineStart );
+                        writer = writeLine( line, unchanged, writer, tmpPage );
+                        line.setLength( 0 );
+                        lineStart = i + 1;
+                    }
+                }
+                line.append( buffer, lineStart, read - lineStart );
+            }
+            writer = writeLine( line, unchanged, writer, tmpPage );
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( writer );
+            tmpPage.delete();
+            throw e;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        if ( writer == null )
+        {
+            return false;
+        }
+
+        writer.close();
+        try
+        {
+            AtomicFiles.replace( tmpPage, page );
+        }
+        finally
+        {
+            tmpPage.delete();
+        }
+        return true;
+    }
+
+    /**
+     * Write the line to the temporary page, which is created with the first marker.
+     *
+     * @return the writer of the temporary page, {@code null} as long as no marker has been found
+     */
+    private Writer writeLine( StringBuilder line, StringBuilder unchanged, Writer writer, File tmpPage )
+        throws IOException
+    {
+        Matcher matcher = marker.matcher( line );
+        if ( !matcher.find() )
+        {
+            if ( writer == null )
+            {
+                unchanged.append( line );
+            }
+            else
+            {
+                writer.append( line );
+            }
+            return writer;
+        }
+
+        if ( writer == null )
+        {
+            writer = Channels.newWriter( new FileOutputStream( tmpPage ).getChannel(), encoding );
+            writer.append( unchanged );
+            unchanged.setLength( 0 );
+        }
+
+        StringBuffer rewritten = new StringBuffer();
+        do
+        {
+            String publishDate = replacements.get( matcher.group( 2 ) );
+            matcher.appendReplacement( rewritten, Matcher.quoteReplacement( matcher.group( 1 ) + publishDate ) );
+        }
+        while ( matcher.find() );
+        matcher.appendTail( rewritten );
+        writer.append( rewritten );
+        return writer;
+    }
+}
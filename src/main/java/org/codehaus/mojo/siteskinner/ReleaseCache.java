@@ -0,0 +1,339 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * On-disk cache of the data of released versions. Released versions never change, so their pom model (which contains
+ * the derived SCM connection) and publish date can be reused forever. The list of available versions does change and is
+ * only valid for a limited time. The manifests of the deployed sites and the versions of the local Maven installations
+ * are kept here as well. The cache is best-effort: if it can't be read or written, the data is simply retrieved again.
+ * 
+ * @since 1.1
+ */
+public class ReleaseCache
+{
+    private final File cacheDirectory;
+
+    private final Log log;
+
+    /**
+     * The constructor.
+     * 
+     * @param cacheDirectory the root directory of the cache
+     * @param log the mojo logger
+     */
+    public ReleaseCache( File cacheDirectory, Log log )
+    {
+        this.cacheDirectory = cacheDirectory;
+
+        this.log = log;
+    }
+
+    /**
+     * Get the cached versions of an artifact.
+     * 
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param maxAge the maximum age of the cached versions in milliseconds
+     * @return the versions, or {@code null} if they aren't cached or are older than {@code maxAge}
+     */
+    public synchronized List<String> getVersions( String groupId, String artifactId, long maxAge )
+    {
+        File versionsFile = new File( getArtifactDirectory( groupId, artifactId ), "versions.properties" );
+        Properties properties = readProperties( versionsFile );
+        if ( properties == null || properties.getProperty( "versions" ) == null )
+        {
+            return null;
+        }
+
+        long timestamp = Long.parseLong( properties.getProperty( "timestamp", "0" ) );
+        if ( System.currentTimeMillis() - timestamp >= maxAge )
+        {
+            return null;
+        }
+
+        List<String> versions = new ArrayList<String>();
+        for ( String version : StringUtils.split( properties.getProperty( "versions" ), "," ) )
+        {
+            versions.add( version );
+        }
+        return versions;
+    }
+
+    /**
+     * Cache the available versions of an artifact.
+     * 
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param versions the available versions
+     */
+    public synchronized void putVersions( String groupId, String artifactId, List<?> versions )
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "versions", StringUtils.join( versions.iterator(), "," ) );
+        properties.setProperty( "timestamp", String.valueOf( System.currentTimeMillis() ) );
+        writeProperties( new File( getArtifactDirectory( groupId, artifactId ), "versions.properties" ), properties );
+    }
+
+    /**
+     * Get the cached pom model of a released version.
+     * 
+     * @param artifact the released artifact
+     * @return the model, or {@code null} if it isn't cached
+     */
+    public synchronized Model getModel( Artifact artifact )
+    {
+        File modelFile = new File( getVersionDirectory( artifact ), "pom.xml" );
+        if ( !modelFile.exists() )
+        {
+            return null;
+        }
+
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newXmlReader( modelFile );
+            return new MavenXpp3Reader().read( reader, false );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to read cached " + modelFile + ": " + e.getMessage() );
+        }
+        catch ( XmlPullParserException e )
+        {
+            log.warn( "Unable to read cached " + modelFile + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+        return null;
+    }
+
+    /**
+     * Cache the pom model of a released version.
+     * 
+     * @param artifact the released artifact
+     * @param model the effective model of the released version
+     */
+    public synchronized void putModel( Artifact artifact, Model model )
+    {
+        File modelFile = new File( getVersionDirectory( artifact ), "pom.xml" );
+        File tmpFile = new File( modelFile.getPath() + ".tmp" );
+        Writer writer = null;
+        try
+        {
+            modelFile.getParentFile().mkdirs();
+            writer = WriterFactory.newXmlWriter( tmpFile );
+            new MavenXpp3Writer().write( writer, model );
+            writer.close();
+            writer = null;
+            rename( tmpFile, modelFile );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to cache " + modelFile + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    /**
+     * Get the cached publish date of a released version.
+     * 
+     * @param artifact the released artifact
+     * @return the publish date, or {@code null} if it isn't cached
+     */
+    public synchronized Date getPublishDate( Artifact artifact )
+    {
+        Properties properties = readProperties( new File( getVersionDirectory( artifact ), "release.properties" ) );
+        if ( properties == null || properties.getProperty( "publishDate" ) == null )
+        {
+            return null;
+        }
+        return new Date( Long.parseLong( properties.getProperty( "publishDate" ) ) );
+    }
+
+    /**
+     * Cache the publish date of a released version.
+     * 
+     * @param artifact the released artifact
+     * @param publishDate the publish date
+     */
+    public synchronized void putPublishDate( Artifact artifact, Date publishDate )
+    {
+        File releaseFile = new File( getVersionDirectory( artifact ), "release.properties" );
+        Properties properties = readProperties( releaseFile );
+        if ( properties == null )
+        {
+            properties = new Properties();
+        }
+        properties.setProperty( "publishDate", String.valueOf( publishDate.getTime() ) );
+        writeProperties( releaseFile, properties );
+    }
+
+    /**
+     * Get the manifest of the site of a released version, as it has last been deployed.
+     * 
+     * @param artifact the released artifact
+     * @param url the URL the site has been deployed to
+     * @return the digest per file of the deployed site, or {@code null} if it hasn't been deployed
+     */
+    public synchronized Properties getSiteManifest( Artifact artifact, String url )
+    {
+        return readProperties( getSiteManifestFile( artifact, url ) );
+    }
+
+    /**
+     * Cache the manifest of the deployed site of a released version.
+     * 
+     * @param artifact the released artifact
+     * @param url the URL the site has been deployed to
+     * @param manifest the digest per file of the deployed site
+     */
+    public synchronized void putSiteManifest( Artifact artifact, String url, Properties manifest )
+    {
+        writeProperties( getSiteManifestFile( artifact, url ), manifest );
+    }
+
+    private File getSiteManifestFile( Artifact artifact, String url )
+    {
+        return new File( getVersionDirectory( artifact ), "site-" + Digests.md5( url ) + ".properties" );
+    }
+
+    private File getArtifactDirectory( String groupId, String artifactId )
+    {
+        return new File( cacheDirectory, groupId.replace( '.', '/' ) + '/' + artifactId );
+    }
+
+    /**
+     * Get the cached versions of the local Maven installations.
+     * 
+     * @return the versions per Maven installation, or {@code null} if they aren't cached
+     */
+    public synchronized Properties getMavenInstallations()
+    {
+        return readProperties( new File( cacheDirectory, "maven-installations.properties" ) );
+    }
+
+    /**
+     * Cache the versions of the local Maven installations.
+     * 
+     * @param installations the versions per Maven installation
+     */
+    public synchronized void putMavenInstallations( Properties installations )
+    {
+        writeProperties( new File( cacheDirectory, "maven-installations.properties" ), installations );
+    }
+
+    private File getVersionDirectory( Artifact artifact )
+    {
+        return new File( getArtifactDirectory( artifact.getGroupId(), artifact.getArtifactId() ),
+                         artifact.getVersion() );
+    }
+
+    private Properties readProperties( File file )
+    {
+        if ( !file.exists() )
+        {
+            return null;
+        }
+
+        FileInputStream inputStream = null;
+        try
+        {
+            inputStream = new FileInputStream( file );
+            Properties properties = new Properties();
+            properties.load( inputStream );
+            return properties;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to read cached " + file + ": " + e.getMessage() );
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( inputStream );
+        }
+    }
+
+    private void writeProperties( File file, Properties properties )
+    {
+        // write to a temporary file first, so other builds never read a partial file
+        File tmpFile = new File( file.getPath() + ".tmp" );
+        FileOutputStream outputStream = null;
+        try
+        {
+            file.getParentFile().mkdirs();
+            outputStream = new FileOutputStream( tmpFile );
+            properties.store( outputStream, null );
+            outputStream.close();
+            outputStream = null;
+            rename( tmpFile, file );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to cache " + file + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( outputStream );
+        }
+    }
+
+    private static void rename( File from, File to )
+        throws IOException
+    {
+        if ( !from.renameTo( to ) )
+        {
+            // File.renameTo can't replace an existing file on every platform
+            to.delete();
+            if ( !from.renameTo( to ) )
+            {
+                throw new IOException( "Unable to rename " + from + " to " + to );
+            }
+        }
+    }
+}
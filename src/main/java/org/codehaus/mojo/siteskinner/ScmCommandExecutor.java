@@ -21,28 +21,49 @@ package org.codehaus.mojo.siteskinner;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.ScmFile;
 import org.apache.maven.scm.ScmFileSet;
 import org.apache.maven.scm.ScmResult;
+import org.apache.maven.scm.ScmTag;
+import org.apache.maven.scm.ScmVersion;
 import org.apache.maven.scm.command.checkout.CheckOutScmResult;
 import org.apache.maven.scm.command.update.UpdateScmResult;
 import org.apache.maven.scm.manager.ScmManager;
 import org.apache.maven.scm.provider.ScmProvider;
 import org.apache.maven.scm.repository.ScmRepository;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
 
 /**
  *  Executes scm command
  */
 public class ScmCommandExecutor
 {
+    /**
+     * The last changed revision in the output of <code>svn info --xml</code>.
+     */
+    private static final Pattern SVN_COMMIT_REVISION = Pattern.compile( "<commit\\s+revision=\"(\\d+)\"" );
+
     private ScmManager manager;
 
     private String connectionUrl;
     
     private Log log;
 
+    private int fetchedFiles;
+
+    private long fetchedBytes;
+
     /**
      * The constructor.
      * 
@@ -81,6 +102,21 @@ public class ScmCommandExecutor
      */
     public void checkout( String targetDirectory, String includes, String excludes )
         throws ScmException
+    {
+        checkout( targetDirectory, includes, excludes, null );
+    }
+
+    /**
+     * Check out the {@code tag} in the {@code targetDirectory}.
+     * 
+     * @param targetDirectory the directory where the sources will be checked out
+     * @param includes the sources to include
+     * @param excludes the sources to exclude
+     * @param tag the tag to check out, {@code null} for the default revision of the connection
+     * @throws ScmException if the checkout throws an exception
+     */
+    public void checkout( String targetDirectory, String includes, String excludes, String tag )
+        throws ScmException
     {
         try
         {
@@ -90,12 +126,14 @@ public class ScmCommandExecutor
 
             ScmFileSet fileSet = getFileSet( targetDirectory, includes, excludes );
 
-            CheckOutScmResult result = provider.checkOut( repository, fileSet );
+            CheckOutScmResult result =
+                provider.checkOut( repository, fileSet, tag == null ? null : (ScmVersion) new ScmTag( tag ) );
 
             if ( !checkResult( result ) ) 
             {
                 throw new ScmException( "checkout failed with provider message" );
             }
+            recordFetched( targetDirectory, result.getCheckedOutFiles() );
         }
         catch ( Exception ex )
         {
@@ -103,6 +141,128 @@ public class ScmCommandExecutor
         }
     }
     
+    /**
+     * Check out the {@code tag} in the empty {@code targetDirectory} with the native git. Only the commit of the tag is
+     * fetched if {@code shallow} is set, which is much faster than a clone of the complete history of an old
+     * repository. Only the {@code includes} are checked out through a sparse checkout, the git provider of Maven SCM
+     * ignores them. Also works with repositories on the local disk, like a mirror.
+     * 
+     * @param targetDirectory the empty directory where the sources will be checked out
+     * @param includes the sources to include, {@code null} for all sources
+     * @param tag the tag to check out, {@code null} for the default revision of the connection
+     * @param shallow {@code true} to fetch only the commit of the tag, without its history
+     * @return {@code true} if the sources have been checked out, {@code false} if the provider isn't git or the
+     *         sources couldn't be fetched, the {@code targetDirectory} is empty again then
+     * @throws ScmException if the connection URL is invalid
+     */
+    public boolean gitCheckout( String targetDirectory, String includes, String tag, boolean shallow )
+        throws ScmException
+    {
+        if ( !"git".equals( getProvider( connectionUrl ) ) )
+        {
+            return false;
+        }
+        File dir = new File( targetDirectory );
+
+        try
+        {
+            CommandLineExecutor.execute( dir, log, "git", "init", "-q" );
+            CommandLineExecutor.execute( dir, log, "git", "remote", "add", "origin", getProviderUrl( connectionUrl ) );
+            if ( includes != null )
+            {
+                CommandLineExecutor.execute( dir, log, "git", "config", "core.sparseCheckout", "true" );
+                writeSparseCheckout( dir, includes );
+            }
+
+            if ( shallow )
+            {
+                fetchShallow( dir, tag );
+            }
+            else
+            {
+                CommandLineExecutor.execute( dir, log, "git", "fetch", "-q", "--tags", "origin" );
+                if ( tag == null )
+                {
+                    CommandLineExecutor.execute( dir, log, "git", "remote", "set-head", "origin", "-a" );
+                }
+                CommandLineExecutor.execute( dir, log, "git", "checkout", "-q", "-f", tag == null ? "origin/HEAD"
+                                : tag );
+            }
+
+            // the files excluded by the sparse checkout are listed as well, but not checked out
+            String files = CommandLineExecutor.execute( dir, log, "git", "ls-files" );
+            for ( String line : files.split( "\\r?\\n" ) )
+            {
+                if ( new File( dir, line.trim() ).isFile() )
+                {
+                    recordFetched( dir, line.trim() );
+                }
+            }
+            return true;
+        }
+        catch ( CommandLineException e )
+        {
+            log.warn( "Unable to fetch " + ( tag == null ? "the sources" : tag ) + " with the native git: "
+                + e.getMessage() );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to fetch " + ( tag == null ? "the sources" : tag ) + " with the native git: "
+                + e.getMessage() );
+        }
+
+        try
+        {
+            FileUtils.cleanDirectory( dir );
+        }
+        catch ( IOException e )
+        {
+            throw new ScmException( "Unable to clean " + targetDirectory, e );
+        }
+        return false;
+    }
+
+    /**
+     * Write the includes as patterns of the sparse checkout. The patterns of a sparse checkout follow the rules of
+     * <code>.gitignore</code>, which match the Ant patterns used for the includes, e.g. <code>**&#47;src/site/**</code>.
+     */
+    private static void writeSparseCheckout( File dir, String includes )
+        throws IOException
+    {
+        StringBuilder patterns = new StringBuilder();
+        for ( String include : includes.split( "," ) )
+        {
+            if ( include.trim().length() > 0 )
+            {
+                patterns.append( include.trim().replace( '\\', '/' ) ).append( '\n' );
+            }
+        }
+        File sparseCheckout = new File( dir, ".git/info/sparse-checkout" );
+        sparseCheckout.getParentFile().mkdirs();
+        FileUtils.fileWrite( sparseCheckout, "UTF-8", patterns.toString() );
+    }
+
+    /**
+     * Fetch the commit of the tag at depth 1 and check it out. The tag is fetched as a local tag, so it can be
+     * referred to like in a complete clone.
+     */
+    private void fetchShallow( File dir, String tag )
+        throws CommandLineException
+    {
+        if ( tag == null )
+        {
+            CommandLineExecutor.execute( dir, log, "git", "fetch", "-q", "--depth", "1", "--no-tags", "origin",
+                                         "HEAD" );
+            CommandLineExecutor.execute( dir, log, "git", "checkout", "-q", "-f", "FETCH_HEAD" );
+        }
+        else
+        {
+            CommandLineExecutor.execute( dir, log, "git", "fetch", "-q", "--depth", "1", "--no-tags", "origin",
+                                         "+refs/tags/" + tag + ":refs/tags/" + tag );
+            CommandLineExecutor.execute( dir, log, "git", "checkout", "-q", "-f", tag );
+        }
+    }
+
     /**
      * Update the sources in the {@code targetDirectory}.
      * 
@@ -140,6 +300,7 @@ public class ScmCommandExecutor
             {
                 throw new ScmException( "checkout failed with provider message" );
             }
+            recordFetched( targetDirectory, result.getUpdatedFiles() );
         }
         catch ( Exception ex )
         {
@@ -147,6 +308,301 @@ public class ScmCommandExecutor
         }
     }
     
+    /**
+     * Verify if only the included sources can be fetched from this connection. The local provider honours the
+     * includes, git supports them through {@link #gitCheckout(String, String, String, boolean)}. Other providers, like
+     * svn, ignore them and always fetch all sources.
+     * 
+     * @return {@code true} if the includes are supported
+     * @throws ScmException if the connection URL is invalid
+     */
+    public boolean isIncludesSupported()
+        throws ScmException
+    {
+        String provider = getProvider( connectionUrl );
+        return "git".equals( provider ) || "local".equals( provider );
+    }
+
+    /**
+     * Verify if the working copy of this connection can be switched to another tag.
+     * 
+     * @return {@code true} if {@link #switchTo(String, String)} is supported by the provider
+     * @throws ScmException if the connection URL is invalid
+     */
+    public boolean isSwitchSupported()
+        throws ScmException
+    {
+        String provider = getProvider( connectionUrl );
+        return "git".equals( provider ) || "svn".equals( provider );
+    }
+
+    /**
+     * Switch the working copy in the {@code targetDirectory} to the {@code tag} of this connection. Local changes are
+     * reverted and files which are not under version control are removed, so the result equals a fresh checkout.
+     * 
+     * @param targetDirectory the directory containing the working copy
+     * @param tag the tag to switch to, {@code null} for the default revision of the connection
+     * @return {@code true} if the working copy has been switched, {@code false} if the provider doesn't support
+     *         switching or the working copy couldn't be switched
+     * @throws ScmException if the connection URL is invalid
+     */
+    public boolean switchTo( String targetDirectory, String tag )
+        throws ScmException
+    {
+        String provider = getProvider( connectionUrl );
+        String url = getProviderUrl( connectionUrl );
+        File dir = new File( targetDirectory );
+
+        try
+        {
+            if ( "git".equals( provider ) )
+            {
+                String previous = CommandLineExecutor.execute( dir, log, "git", "rev-parse", "HEAD" ).trim();
+                CommandLineExecutor.execute( dir, log, "git", "remote", "set-url", "origin", url );
+                if ( new File( dir, ".git/shallow" ).exists() )
+                {
+                    // fetching all tags would add their complete history to a working copy without history
+                    fetchShallow( dir, tag );
+                }
+                else
+                {
+                    CommandLineExecutor.execute( dir, log, "git", "fetch", "--tags", "origin" );
+                    CommandLineExecutor.execute( dir, log, "git", "checkout", "-f", tag == null ? "origin/HEAD"
+                                    : tag );
+                }
+                CommandLineExecutor.execute( dir, log, "git", "clean", "-f", "-d", "-x" );
+
+                String changed =
+                    CommandLineExecutor.execute( dir, log, "git", "diff", "--name-only", previous, "HEAD" );
+                for ( String line : changed.split( "\\r?\\n" ) )
+                {
+                    recordFetched( dir, line.trim() );
+                }
+                return true;
+            }
+            else if ( "svn".equals( provider ) )
+            {
+                CommandLineExecutor.execute( dir, log, "svn", "revert", "-R", "." );
+                String switched = CommandLineExecutor.execute( dir, log, "svn", "switch", url, "." );
+                for ( String line : switched.split( "\\r?\\n" ) )
+                {
+                    // e.g. "U    src/site/site.xml"
+                    if ( line.length() > 5 && "AUG".indexOf( line.charAt( 0 ) ) >= 0 && line.charAt( 1 ) == ' ' )
+                    {
+                        recordFetched( dir, line.substring( 5 ).trim() );
+                    }
+                }
+
+                String status = CommandLineExecutor.execute( dir, log, "svn", "status", "--no-ignore" );
+                for ( String line : status.split( "\\r?\\n" ) )
+                {
+                    // unversioned and ignored files
+                    if ( line.length() > 8 && ( line.charAt( 0 ) == '?' || line.charAt( 0 ) == 'I' ) )
+                    {
+                        FileUtils.forceDelete( new File( dir, line.substring( 8 ).trim() ) );
+                    }
+                }
+                return true;
+            }
+        }
+        catch ( CommandLineException e )
+        {
+            log.warn( "Unable to switch " + targetDirectory + ": " + e.getMessage() );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to switch " + targetDirectory + ": " + e.getMessage() );
+        }
+        return false;
+    }
+
+    /**
+     * Get the date of the last commit of the working copy in the {@code targetDirectory}. For a released tag this is
+     * the moment the release has been tagged.
+     * 
+     * @param targetDirectory the directory containing the working copy
+     * @param tag the checked out tag, {@code null} for the default revision of the connection
+     * @return the date of the last commit, or {@code null} if the provider isn't supported or the date couldn't be
+     *         determined
+     * @throws ScmException if the connection URL is invalid
+     */
+    public Date getLastCommitDate( String targetDirectory, String tag )
+        throws ScmException
+    {
+        String provider = getProvider( connectionUrl );
+        File dir = new File( targetDirectory );
+
+        try
+        {
+            if ( "git".equals( provider ) )
+            {
+                String seconds =
+                    CommandLineExecutor.execute( dir, log, "git", "log", "-1", "--format=%ct", tag == null ? "HEAD"
+                                    : tag );
+                return new Date( Long.parseLong( seconds.trim() ) * 1000L );
+            }
+            else if ( "svn".equals( provider ) )
+            {
+                String info = CommandLineExecutor.execute( dir, log, "svn", "info", "--xml", "." );
+                int start = info.indexOf( "<date>" );
+                if ( start >= 0 )
+                {
+                    // e.g. 2012-08-31T12:34:56.123456Z
+                    String date = info.substring( start + "<date>".length(), start + "<date>".length() + 19 );
+                    SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss" );
+                    format.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+                    return format.parse( date );
+                }
+            }
+        }
+        catch ( CommandLineException e )
+        {
+            log.debug( "Unable to get the date of the last commit: " + e.getMessage() );
+        }
+        catch ( NumberFormatException e )
+        {
+            log.debug( "Unable to get the date of the last commit: " + e.getMessage() );
+        }
+        catch ( ParseException e )
+        {
+            log.debug( "Unable to get the date of the last commit: " + e.getMessage() );
+        }
+        return null;
+    }
+
+    /**
+     * Get the revision of the working copy in the {@code targetDirectory}, which changes with every update, even if
+     * the connection and the tag don't, e.g. when a moved tag or a branch is fetched.
+     * 
+     * @param targetDirectory the directory containing the working copy
+     * @return the commit id for git, the last changed revision for svn, or {@code null} if the provider isn't
+     *         supported or the revision couldn't be determined
+     * @throws ScmException if the connection URL is invalid
+     */
+    public String getRevision( String targetDirectory )
+        throws ScmException
+    {
+        String provider = getProvider( connectionUrl );
+        File dir = new File( targetDirectory );
+
+        try
+        {
+            if ( "git".equals( provider ) )
+            {
+                return CommandLineExecutor.execute( dir, log, "git", "rev-parse", "HEAD" ).trim();
+            }
+            else if ( "svn".equals( provider ) )
+            {
+                String info = CommandLineExecutor.execute( dir, log, "svn", "info", "--xml", "." );
+                // e.g. <commit revision="1234">
+                Matcher matcher = SVN_COMMIT_REVISION.matcher( info );
+                if ( matcher.find() )
+                {
+                    return matcher.group( 1 );
+                }
+            }
+        }
+        catch ( CommandLineException e )
+        {
+            log.debug( "Unable to get the revision: " + e.getMessage() );
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of files checked out, updated or switched by this executor
+     */
+    public int getFetchedFiles()
+    {
+        return fetchedFiles;
+    }
+
+    /**
+     * @return the size of the files checked out, updated or switched by this executor
+     */
+    public long getFetchedBytes()
+    {
+        return fetchedBytes;
+    }
+
+    private void recordFetched( String targetDirectory, List<ScmFile> files )
+    {
+        if ( files != null )
+        {
+            for ( ScmFile file : files )
+            {
+                recordFetched( new File( targetDirectory ), file.getPath() );
+            }
+        }
+    }
+
+    private void recordFetched( File dir, String path )
+    {
+        if ( path.length() == 0 )
+        {
+            return;
+        }
+        fetchedFiles++;
+
+        // the paths are absolute, relative to the working copy or, like with the local provider, prefixed by the module
+        File file = new File( path );
+        if ( !file.isAbsolute() )
+        {
+            file = new File( dir, path );
+        }
+        String relativePath = path.replace( '\\', '/' );
+        while ( !file.isFile() && relativePath.length() > 0 )
+        {
+            file = new File( dir, relativePath );
+            int slash = relativePath.indexOf( '/' );
+            relativePath = slash < 0 ? "" : relativePath.substring( slash + 1 );
+        }
+        if ( file.isFile() )
+        {
+            fetchedBytes += file.length();
+        }
+    }
+
+    /**
+     * Get the provider of the connection URL, e.g. <code>git</code> for <code>scm:git:https://host/repo.git</code>
+     * 
+     * @param connectionUrl the connection URL
+     * @return the provider
+     * @throws ScmException if the connection URL is invalid
+     */
+    static String getProvider( String connectionUrl )
+        throws ScmException
+    {
+        if ( !connectionUrl.startsWith( "scm:" ) || connectionUrl.length() < 5 )
+        {
+            throw new ScmException( "Invalid connection URL: " + connectionUrl );
+        }
+
+        // the delimiter is the first character after "scm:provider"
+        int delimiter = 4;
+        while ( delimiter < connectionUrl.length() && connectionUrl.charAt( delimiter ) != ':'
+            && connectionUrl.charAt( delimiter ) != '|' )
+        {
+            delimiter++;
+        }
+        return connectionUrl.substring( 4, delimiter );
+    }
+
+    /**
+     * Get the provider specific part of the connection URL, e.g. <code>https://host/repo.git</code> for
+     * <code>scm:git:https://host/repo.git</code>
+     * 
+     * @param connectionUrl the connection URL
+     * @return the provider specific URL
+     * @throws ScmException if the connection URL is invalid
+     */
+    static String getProviderUrl( String connectionUrl )
+        throws ScmException
+    {
+        int start = 4 + getProvider( connectionUrl ).length() + 1;
+        return start < connectionUrl.length() ? connectionUrl.substring( start ) : "";
+    }
+
     private ScmFileSet getFileSet( String path, String includes, String excludes ) throws IOException
     {
         File dir = new File( path );
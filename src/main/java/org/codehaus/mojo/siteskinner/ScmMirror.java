@@ -0,0 +1,205 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.scm.ScmException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+
+/**
+ * Keeps local mirrors of remote git repositories, so released tags can be checked out from the local disk instead of
+ * the network. A mirror is a bare <code>--mirror</code> clone, created with the first checkout and updated
+ * incrementally once per Maven session. The mirrors directory can be shared by concurrent builds: a mirror is locked
+ * while it's created or updated, and it's cloned next to its final location and renamed when complete, so an
+ * interrupted clone is never used as mirror. Only git is mirrored: svn has no partial mirrors, <code>svnsync</code> can
+ * only mirror the complete repository, which is usually much more than the project. Svn connections are used directly.
+ * 
+ * @since 1.1
+ */
+public class ScmMirror
+{
+    /**
+     * Mirrors which are already up to date in this Maven session
+     */
+    private static final Set<File> UPDATED_MIRRORS = Collections.synchronizedSet( new HashSet<File>() );
+
+    /**
+     * The lock per mirror, so versions with different mirrors are checked out at the same time
+     */
+    private static final Map<File, Object> MIRROR_LOCKS = new HashMap<File, Object>();
+
+    private final File mirrorsDirectory;
+
+    private final Log log;
+
+    /**
+     * The constructor.
+     * 
+     * @param mirrorsDirectory the directory containing all mirrors
+     * @param log the mojo logger
+     */
+    public ScmMirror( File mirrorsDirectory, Log log )
+    {
+        this.mirrorsDirectory = mirrorsDirectory;
+
+        this.log = log;
+    }
+
+    /**
+     * Create or update the mirror of the repository of the {@code connectionUrl}.
+     * 
+     * @param connectionUrl the connection URL
+     * @return the connection URL pointing to the local mirror, or the original {@code connectionUrl} if the provider
+     *         doesn't support mirroring
+     * @throws ScmException if the mirror can't be created or updated
+     */
+    public String mirror( String connectionUrl )
+        throws ScmException
+    {
+        String provider = ScmCommandExecutor.getProvider( connectionUrl );
+        if ( !"git".equals( provider ) )
+        {
+            log.warn( "Mirroring is not supported for the " + provider + " provider, using " + connectionUrl );
+            return connectionUrl;
+        }
+
+        String url = ScmCommandExecutor.getProviderUrl( connectionUrl );
+        File mirror = new File( mirrorsDirectory, Digests.md5( url ) ).getAbsoluteFile();
+
+        // Several versions can share the same mirror, only one of them may change it at a time. The file lock
+        // excludes other processes, but can't be acquired twice by this one
+        synchronized ( getLock( mirror ) )
+        {
+            try
+            {
+                return "scm:git:" + mirrorGit( url, mirror );
+            }
+            catch ( CommandLineException e )
+            {
+                throw new ScmException( "Failed to mirror " + connectionUrl, e );
+            }
+            catch ( IOException e )
+            {
+                throw new ScmException( "Failed to mirror " + connectionUrl, e );
+            }
+        }
+    }
+
+    private static Object getLock( File mirror )
+    {
+        synchronized ( MIRROR_LOCKS )
+        {
+            Object lock = MIRROR_LOCKS.get( mirror );
+            if ( lock == null )
+            {
+                lock = new Object();
+                MIRROR_LOCKS.put( mirror, lock );
+            }
+            return lock;
+        }
+    }
+
+    private String mirrorGit( String url, File mirror )
+        throws CommandLineException, IOException
+    {
+        mirrorsDirectory.mkdirs();
+
+        RandomAccessFile lockFile =
+            new RandomAccessFile( new File( mirrorsDirectory, mirror.getName() + ".lock" ), "rw" );
+        try
+        {
+            FileLock lock = lockFile.getChannel().lock();
+            try
+            {
+                if ( !mirror.exists() )
+                {
+                    log.info( "Creating mirror of " + url + " in " + mirror );
+                    createGitMirror( url, mirror );
+                    UPDATED_MIRRORS.add( mirror );
+                }
+                else if ( UPDATED_MIRRORS.add( mirror ) )
+                {
+                    log.info( "Updating mirror of " + url + " in " + mirror );
+                    CommandLineExecutor.execute( mirror, log, "git", "remote", "update", "--prune" );
+                }
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        finally
+        {
+            lockFile.close();
+        }
+        return toFileUrl( mirror );
+    }
+
+    /**
+     * Clone the repository next to the mirror and rename the clone when it's complete. The caller holds the lock of
+     * the mirror, so a clone left by an interrupted build can be removed.
+     */
+    private void createGitMirror( String url, File mirror )
+        throws CommandLineException, IOException
+    {
+        File clone = new File( mirrorsDirectory, mirror.getName() + ".tmp" );
+        if ( clone.exists() )
+        {
+            FileUtils.deleteDirectory( clone );
+        }
+
+        try
+        {
+            CommandLineExecutor.execute( mirrorsDirectory, log, "git", "clone", "--mirror", url, clone.getName() );
+            if ( !clone.renameTo( mirror ) )
+            {
+                throw new IOException( "Unable to move " + clone + " to " + mirror );
+            }
+        }
+        finally
+        {
+            if ( clone.exists() )
+            {
+                FileUtils.deleteDirectory( clone );
+            }
+        }
+    }
+
+    static String toFileUrl( File file )
+    {
+        String path = file.getAbsolutePath().replace( '\\', '/' );
+        if ( !path.startsWith( "/" ) )
+        {
+            path = "/" + path;
+        }
+        return "file://" + path;
+    }
+}
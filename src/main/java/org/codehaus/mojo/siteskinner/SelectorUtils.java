@@ -22,11 +22,15 @@ package org.codehaus.mojo.siteskinner;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Properties;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
 
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 
 /**
@@ -48,23 +52,37 @@ public final class SelectorUtils
      */
     static String getMavenVersion()
     {
+        InputStream inputStream = null;
         try
         {
             // This relies on the fact that MavenProject is the in core classloader
             // and that the core classloader is for the maven-core artifact
             // and that should have a pom.properties file
             // if this ever changes, we will have to revisit this code.
+            inputStream =
+                MavenProject.class.getClassLoader().getResourceAsStream( "META-INF/maven/org.apache.maven/maven-core/"
+                                                                             + "pom.properties" );
             Properties properties = new Properties();
-            properties.load( MavenProject.class.getClassLoader().getResourceAsStream(
-                "META-INF/maven/org.apache.maven/maven-core/pom.properties" ) );
+            properties.load( inputStream );
             return StringUtils.trim( properties.getProperty( "version" ) );
         }
         catch ( Exception e )
         {
             return null;
         }
+        finally
+        {
+            IOUtil.close( inputStream );
+        }
     }
     
+    /**
+     * Retrieves the version of a Maven installation from the <code>pom.properties</code> of its maven-core jar. Use
+     * {@link MavenInstallations#getVersion(File)} to avoid scanning the same installation again.
+     *
+     * @param mavenHome the Maven installation
+     * @return the Maven version, or {@code null} if it can't be determined
+     */
     static String getMavenVersion( File mavenHome )
     {
         File mavenLib = new File( mavenHome, "lib" );
@@ -75,33 +93,70 @@ public final class SelectorUtils
                 return name.endsWith( ".jar" );
             }
         } );
+        if ( jarFiles == null )
+        {
+            return null;
+        }
 
-        for ( File file : jarFiles )
+        // the maven-core jar usually has its own name, so try it first
+        Arrays.sort( jarFiles, new Comparator<File>()
         {
-            try
+            public int compare( File o1, File o2 )
             {
-                @SuppressWarnings( "deprecation" )
-                URL url =
-                    new URL( "jar:" + file.toURL().toExternalForm()
-                        + "!/META-INF/maven/org.apache.maven/maven-core/pom.properties" );
+                boolean core1 = o1.getName().startsWith( "maven-core" );
+                boolean core2 = o2.getName().startsWith( "maven-core" );
+                return core1 == core2 ? 0 : ( core1 ? -1 : 1 );
+            }
+        } );
 
-                Properties properties = new Properties();
-                properties.load( url.openStream() );
-                String version = StringUtils.trim( properties.getProperty( "version" ) );
-                if ( version != null )
-                {
-                    return version;
-                }
+        for ( File file : jarFiles )
+        {
+            String version = getMavenCoreVersion( file );
+            if ( version != null )
+            {
+                return version;
             }
-            catch ( MalformedURLException e )
+        }
+        return null;
+    }
+
+    private static String getMavenCoreVersion( File jarFile )
+    {
+        // not by a jar: URL, the JarURLConnection caches the opened jar and never closes it
+        JarFile jar = null;
+        InputStream inputStream = null;
+        try
+        {
+            jar = new JarFile( jarFile );
+            ZipEntry entry = jar.getEntry( "META-INF/maven/org.apache.maven/maven-core/pom.properties" );
+            if ( entry == null )
             {
-                // ignore
+                return null;
             }
-            catch ( IOException e )
+
+            inputStream = jar.getInputStream( entry );
+            Properties properties = new Properties();
+            properties.load( inputStream );
+            return StringUtils.trim( properties.getProperty( "version" ) );
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( inputStream );
+            if ( jar != null )
             {
-                // ignore
+                try
+                {
+                    jar.close();
+                }
+                catch ( IOException e )
+                {
+                    // ignore
+                }
             }
         }
-        return null;
     }
 }
@@ -0,0 +1,129 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.maven.doxia.site.decoration.Body;
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.PublishDate;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Writer;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomUtils;
+
+/**
+ * Merges the layout of the site descriptor of the current project into the site descriptor of a released version. The
+ * content of the released version, like its menus, is kept.
+ *
+ * @since 1.1
+ */
+class SiteDescriptorMerger
+{
+    private final boolean mergeBody;
+
+    /**
+     * @param mergeBody {@code true} if the breadcrumbs, footer, head and links of the current project should replace
+     *            those of the released version
+     */
+    SiteDescriptorMerger( boolean mergeBody )
+    {
+        this.mergeBody = mergeBody;
+    }
+
+    /**
+     * @param currentModel the site descriptor of the current project
+     * @return the format of the publish date of the merged site descriptor
+     */
+    static String getPublishDateFormat( DecorationModel currentModel )
+    {
+        if ( currentModel.getPublishDate() != null )
+        {
+            return currentModel.getPublishDate().getFormat();
+        }
+        return new PublishDate().getFormat();
+    }
+
+    /**
+     * Merge the current site descriptor into the released one.
+     *
+     * @param releasedModel the site descriptor of the released version, which is changed by the merge
+     * @param resolvedCurrentModel the site descriptor of the current project including the inherited parts, for the
+     *            skin
+     * @param currentModel the site descriptor of the current project, which is left unchanged
+     * @param publishDate the formatted publish date of the released version
+     * @return the merged site descriptor, serialized
+     * @throws IOException if the merged site descriptor can't be serialized
+     */
+    byte[] merge( DecorationModel releasedModel, DecorationModel resolvedCurrentModel, DecorationModel currentModel,
+                  String publishDate )
+        throws IOException
+    {
+        releasedModel.setSkin( resolvedCurrentModel.getSkin() );
+        // MOJO-1827: Copy all layout-specific content
+        releasedModel.setBannerLeft( currentModel.getBannerLeft() );
+        releasedModel.setBannerRight( currentModel.getBannerRight() );
+        releasedModel.setGoogleAnalyticsAccountId( currentModel.getGoogleAnalyticsAccountId() );
+        releasedModel.setModelEncoding( currentModel.getModelEncoding() );
+        releasedModel.setName( currentModel.getName() );
+        releasedModel.setPoweredBy( currentModel.getPoweredBy() );
+        releasedModel.setPublishDate( currentModel.getPublishDate() );
+        releasedModel.setVersion( currentModel.getVersion() );
+
+        if ( mergeBody && currentModel.getBody() != null )
+        {
+            if ( releasedModel.getBody() == null )
+            {
+                releasedModel.setBody( new Body() );
+            }
+            releasedModel.getBody().setBreadcrumbs( currentModel.getBody().getBreadcrumbs() );
+            releasedModel.getBody().setFooter( currentModel.getBody().getFooter() );
+            releasedModel.getBody().setHead( currentModel.getBody().getHead() );
+            releasedModel.getBody().setLinks( currentModel.getBody().getLinks() );
+        }
+
+        // currentModel is shared by all locales and versions, merging would change its custom section
+        Xpp3Dom currentCustom =
+            currentModel.getCustom() == null ? null : new Xpp3Dom( (Xpp3Dom) currentModel.getCustom() );
+        Xpp3Dom mergedCustom = Xpp3DomUtils.mergeXpp3Dom( currentCustom, (Xpp3Dom) releasedModel.getCustom() );
+
+        if ( mergedCustom == null )
+        {
+            mergedCustom = new Xpp3Dom( "custom" );
+        }
+
+        // a site descriptor merged by a previous run already has a publishDate
+        for ( int i = mergedCustom.getChildCount() - 1; i >= 0; i-- )
+        {
+            if ( "publishDate".equals( mergedCustom.getChild( i ).getName() ) )
+            {
+                mergedCustom.removeChild( i );
+            }
+        }
+        Xpp3Dom publishDateChild = new Xpp3Dom( "publishDate" );
+        publishDateChild.setValue( publishDate );
+        mergedCustom.addChild( publishDateChild );
+        releasedModel.setCustom( mergedCustom );
+
+        ByteArrayOutputStream mergedSiteXml = new ByteArrayOutputStream();
+        new DecorationXpp3Writer().write( mergedSiteXml, releasedModel );
+        return mergedSiteXml.toByteArray();
+    }
+}
@@ -0,0 +1,253 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.doxia.sink.render.RenderingContext;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.doxia.siterenderer.RendererException;
+import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
+import org.apache.maven.doxia.siterenderer.sink.SiteRendererSink;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Applies a new skin to pages which have already been generated, by extracting their content and decorating it again.
+ * Pages which haven't been decorated by a skin, like javadoc or xref pages, are left untouched.
+ *
+ * @since 1.1
+ */
+class SiteRerenderer
+{
+    /**
+     * The elements containing the content of a page, in order of preference. The Maven skins wrap the content in a
+     * <code>contentBox</code>, others like the Fluido skin only in a <code>bodyColumn</code>.
+     */
+    private static final String[] CONTENT_IDS = { "contentBox", "bodyColumn" };
+
+    private static final Pattern TITLE = Pattern.compile( "<title>(.*?)</title>", Pattern.CASE_INSENSITIVE
+        | Pattern.DOTALL );
+
+    private static final Pattern DIV_TAG = Pattern.compile( "<(/?)div[\\s>]", Pattern.CASE_INSENSITIVE );
+
+    private final Renderer renderer;
+
+    private final Log log;
+
+    SiteRerenderer( Renderer renderer, Log log )
+    {
+        this.renderer = renderer;
+        this.log = log;
+    }
+
+    /**
+     * Re-render all pages of a directory in place.
+     *
+     * @param context the rendering context with the new skin and site descriptor
+     * @param siteDirectory the directory containing the generated pages
+     * @param excludes the comma separated patterns of the pages to skip, e.g. those of other locales, may be
+     *            {@code null}
+     * @param titlePrefixes the prefixes the old skin might have added to the title of a page
+     * @param encoding the encoding of the pages
+     * @return the number of re-rendered pages
+     * @throws IOException if a page can't be read or written
+     * @throws RendererException if a page can't be rendered
+     */
+    int rerender( final SiteRenderingContext context, final File siteDirectory, String excludes,
+                  final List<String> titlePrefixes, final String encoding )
+        throws IOException, RendererException
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir( siteDirectory );
+        scanner.setIncludes( new String[] { "**/*.html" } );
+        if ( excludes != null )
+        {
+            scanner.setExcludes( StringUtils.split( excludes, "," ) );
+        }
+        scanner.scan();
+        String[] pages = scanner.getIncludedFiles();
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool( Math.max( 1, Math.min( pages.length,
+                                                                 Runtime.getRuntime().availableProcessors() ) ) );
+        List<Future<Boolean>> rerenders = new ArrayList<Future<Boolean>>();
+        try
+        {
+            for ( final String page : pages )
+            {
+                rerenders.add( executor.submit( new Callable<Boolean>()
+                {
+                    public Boolean call()
+                        throws Exception
+                    {
+                        return Boolean.valueOf( rerenderPage( context, siteDirectory, page.replace( '\\', '/' ),
+                                                              titlePrefixes, encoding ) );
+                    }
+                } ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        int rerendered = 0;
+        for ( Future<Boolean> rerender : rerenders )
+        {
+            try
+            {
+                if ( rerender.get().booleanValue() )
+                {
+                    rerendered++;
+                }
+            }
+            catch ( ExecutionException e )
+            {
+                if ( e.getCause() instanceof IOException )
+                {
+                    throw (IOException) e.getCause();
+                }
+                else if ( e.getCause() instanceof RendererException )
+                {
+                    throw (RendererException) e.getCause();
+                }
+                throw new RendererException( e.getCause().getMessage(), e.getCause() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while re-rendering " + siteDirectory );
+            }
+        }
+        return rerendered;
+    }
+
+    private boolean rerenderPage( SiteRenderingContext context, File siteDirectory, String page,
+                                  List<String> titlePrefixes, String encoding )
+        throws IOException, RendererException
+    {
+        File pageFile = new File( siteDirectory, page );
+        String html = FileUtils.fileRead( pageFile, encoding );
+
+        String content = extractContent( html );
+        if ( content == null )
+        {
+            log.debug( "Keeping undecorated page " + page );
+            return false;
+        }
+
+        SiteRendererSink sink = new SiteRendererSink( new RenderingContext( siteDirectory, page ) );
+        sink.title();
+        sink.text( extractTitle( html, titlePrefixes ) );
+        sink.title_();
+        sink.body();
+        sink.rawText( content );
+        sink.body_();
+
+        // write next to the page and replace it once completed
+        File renderedFile = new File( pageFile.getPath() + ".siteskinner" );
+        Writer writer = WriterFactory.newWriter( renderedFile, encoding );
+        try
+        {
+            renderer.generateDocument( writer, sink, context );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+
+        AtomicFiles.replace( renderedFile, pageFile );
+        return true;
+    }
+
+    /**
+     * @return the inner html of the element containing the content, or {@code null} if the page wasn't decorated
+     */
+    static String extractContent( String html )
+    {
+        for ( String contentId : CONTENT_IDS )
+        {
+            Matcher start =
+                Pattern.compile( "<div[^>]*\\sid=\"" + contentId + "\"[^>]*>", Pattern.CASE_INSENSITIVE ).matcher( html );
+            if ( !start.find() )
+            {
+                continue;
+            }
+
+            int depth = 1;
+            Matcher div = DIV_TAG.matcher( html );
+            int from = start.end();
+            while ( div.find( from ) )
+            {
+                depth += div.group( 1 ).length() == 0 ? 1 : -1;
+                if ( depth == 0 )
+                {
+                    return html.substring( start.end(), div.start() );
+                }
+                from = div.end();
+            }
+        }
+        return null;
+    }
+
+    private static String extractTitle( String html, List<String> titlePrefixes )
+    {
+        Matcher matcher = TITLE.matcher( html );
+        if ( !matcher.find() )
+        {
+            return "";
+        }
+
+        String title = unescape( matcher.group( 1 ).trim() );
+        for ( String titlePrefix : titlePrefixes )
+        {
+            if ( titlePrefix != null && title.startsWith( titlePrefix + " - " ) )
+            {
+                return title.substring( titlePrefix.length() + 3 ).trim();
+            }
+        }
+        return title;
+    }
+
+    private static String unescape( String text )
+    {
+        String unescaped = StringUtils.replace( text, "&lt;", "<" );
+        unescaped = StringUtils.replace( unescaped, "&gt;", ">" );
+        unescaped = StringUtils.replace( unescaped, "&quot;", "\"" );
+        unescaped = StringUtils.replace( unescaped, "&#39;", "'" );
+        return StringUtils.replace( unescaped, "&amp;", "&" );
+    }
+}
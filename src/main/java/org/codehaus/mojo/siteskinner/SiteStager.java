@@ -0,0 +1,203 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Stages the generated sites of several versions into one directory. Files with the same content, like the resources
+ * of the skin, are stored only once: the copies are hard links where the file system supports them, otherwise plain
+ * copies. Only files with the same size are compared by their digest. The generated sites themselves are copied,
+ * never linked, so generating them again can't change the staged files of other versions.
+ *
+ * @since 1.1
+ */
+class SiteStager
+{
+    private final Log log;
+
+    /**
+     * The staged files per size, the first one of every content.
+     */
+    private final Map<Long, List<StagedFile>> stagedFiles = new HashMap<Long, List<StagedFile>>();
+
+    /**
+     * Whether the staging directory supports hard links, {@code null} until the first link has been tried.
+     */
+    private Boolean hardLinks;
+
+    private long savedBytes;
+
+    SiteStager( Log log )
+    {
+        this.log = log;
+    }
+
+    /**
+     * Stage a generated site.
+     *
+     * @param siteDirectory the generated site
+     * @param targetDirectory the directory to stage the site to
+     * @throws IOException if the site can't be staged
+     */
+    void stage( File siteDirectory, File targetDirectory )
+        throws IOException
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir( siteDirectory );
+        scanner.scan();
+
+        for ( String path : scanner.getIncludedFiles() )
+        {
+            File source = new File( siteDirectory, path );
+            File target = new File( targetDirectory, path );
+            target.getParentFile().mkdirs();
+
+            // a file without a staged file of the same size is unique, don't compute its digest
+            Long size = Long.valueOf( source.length() );
+            List<StagedFile> sameSize = stagedFiles.get( size );
+            String digest = null;
+            File staged = null;
+            if ( sameSize == null )
+            {
+                sameSize = new ArrayList<StagedFile>();
+                stagedFiles.put( size, sameSize );
+            }
+            else
+            {
+                digest = Digests.md5( source );
+                for ( StagedFile stagedFile : sameSize )
+                {
+                    if ( digest.equals( stagedFile.getDigest() ) )
+                    {
+                        staged = stagedFile.file;
+                        break;
+                    }
+                }
+            }
+
+            if ( staged != null && link( staged, target ) )
+            {
+                savedBytes += size.longValue();
+            }
+            else
+            {
+                FileUtils.copyFile( source, target );
+                if ( staged == null )
+                {
+                    sameSize.add( new StagedFile( target, digest ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes which didn't have to be stored again
+     */
+    long getSavedBytes()
+    {
+        return savedBytes;
+    }
+
+    /**
+     * Link the target to the staged file. Whether the file system supports hard links is probed by the first link, the
+     * following files are copied if it doesn't.
+     *
+     * @return {@code true} if the target has been linked, {@code false} if it has to be copied
+     */
+    private boolean link( File staged, File target )
+    {
+        if ( Boolean.FALSE.equals( hardLinks ) )
+        {
+            return false;
+        }
+
+        try
+        {
+            createHardLink( staged, target );
+            hardLinks = Boolean.TRUE;
+            return true;
+        }
+        catch ( Exception e )
+        {
+            if ( hardLinks == null )
+            {
+                log.debug( "Hard links aren't supported, copying: " + e );
+                hardLinks = Boolean.FALSE;
+            }
+            else
+            {
+                log.debug( "Unable to link " + target + ", copying: " + e );
+            }
+            target.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Hard links are only supported by the JDK since Java 7, on older versions the files are copied.
+     */
+    private static void createHardLink( File staged, File target )
+        throws Exception
+    {
+        target.delete();
+        Class<?> files = Class.forName( "java.nio.file.Files" );
+        Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+        Method toPath = File.class.getMethod( "toPath" );
+        files.getMethod( "createLink", pathClass, pathClass ).invoke( null, toPath.invoke( target ),
+                                                                       toPath.invoke( staged ) );
+    }
+
+    /**
+     * A staged file, its digest is only computed once another file of the same size is staged.
+     */
+    private static class StagedFile
+    {
+        private final File file;
+
+        private String digest;
+
+        StagedFile( File file, String digest )
+        {
+            this.file = file;
+            this.digest = digest;
+        }
+
+        String getDigest()
+            throws IOException
+        {
+            if ( digest == null )
+            {
+                digest = Digests.md5( file );
+            }
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Verifies a reskinned site before it's deployed, by comparing it with the published site of the released version:
+ * files which have been lost or added, and local links and resources of the pages which are broken. The published
+ * site is either a copy of it, or the manifest of its last deployment. Both sites are walked at the same time by a
+ * fixed number of threads, every file is read once: it's digested while the links of a page are scanned line by line.
+ *
+ * @since 1.1
+ */
+class SiteVerifier
+{
+    private static final Pattern LINK =
+        Pattern.compile( "\\b(?:href|src)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')", Pattern.CASE_INSENSITIVE );
+
+    private static final Pattern SCHEME = Pattern.compile( "^[a-zA-Z][a-zA-Z0-9+.-]*:" );
+
+    /**
+     * The maximum number of entries per section of the report
+     */
+    private static final int REPORT_LIMIT = 100;
+
+    private final String encoding;
+
+    private final Set<String> excludedDirectories;
+
+    private final int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param encoding the encoding of the generated pages
+     * @param excludedDirectories the names of the directories which aren't part of the verified site, like the sites
+     *            of modules which haven't been staged
+     */
+    SiteVerifier( String encoding, Set<String> excludedDirectories )
+    {
+        this.encoding = encoding;
+        this.excludedDirectories = excludedDirectories;
+    }
+
+    /**
+     * Verify the generated site.
+     *
+     * @param siteDirectory the generated site
+     * @param publishedDirectory a copy of the published site, or {@code null}
+     * @param publishedManifest the digest per file of the published site, used if there's no copy of it, or
+     *            {@code null} if the published site is unknown
+     * @return the result of the verification
+     * @throws IOException if a file can't be read
+     */
+    Result verify( File siteDirectory, File publishedDirectory, Properties publishedManifest )
+        throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            Future<Walk> generatedScan = executor.submit( new Scan( siteDirectory ) );
+            Future<Walk> publishedScan =
+                publishedDirectory == null ? null : executor.submit( new Scan( publishedDirectory ) );
+            Walk generated = generatedScan.get();
+            Walk published = publishedScan == null ? null : publishedScan.get();
+
+            List<Future<?>> workers = new ArrayList<Future<?>>();
+            generated.start( executor, workers );
+            if ( published != null )
+            {
+                published.start( executor, workers );
+            }
+            for ( Future<?> worker : workers )
+            {
+                worker.get();
+            }
+
+            Map<String, String> publishedDigests = null;
+            if ( published != null )
+            {
+                publishedDigests = published.digests;
+            }
+            else if ( publishedManifest != null )
+            {
+                publishedDigests = new ConcurrentHashMap<String, String>();
+                for ( Object path : publishedManifest.keySet() )
+                {
+                    if ( !isExcluded( (String) path ) )
+                    {
+                        publishedDigests.put( (String) path, publishedManifest.getProperty( (String) path ) );
+                    }
+                }
+            }
+            return new Result( generated, publishedDigests, published == null ? null : published.brokenLinks );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw (IOException) new IOException( e.getCause().getMessage() ).initCause( e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while verifying the site" );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return {@code true} if the path is within an excluded directory, at any level since the sites of other locales
+     *         are subdirectories
+     */
+    private boolean isExcluded( String path )
+    {
+        int start = 0;
+        for ( int end = path.indexOf( '/' ); end >= 0; end = path.indexOf( '/', start ) )
+        {
+            if ( excludedDirectories.contains( path.substring( start, end ) ) )
+            {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return the path of the link relative to the site, {@code null} if it's outside of the site
+     */
+    private static String resolve( String page, String link )
+    {
+        LinkedList<String> segments = new LinkedList<String>();
+        Collections.addAll( segments, page.split( "/" ) );
+        segments.removeLast();
+
+        for ( String segment : link.split( "/" ) )
+        {
+            if ( segment.length() == 0 || ".".equals( segment ) )
+            {
+                continue;
+            }
+            else if ( "..".equals( segment ) )
+            {
+                if ( segments.isEmpty() )
+                {
+                    return null;
+                }
+                segments.removeLast();
+            }
+            else
+            {
+                segments.add( segment );
+            }
+        }
+
+        StringBuilder path = new StringBuilder();
+        for ( String segment : segments )
+        {
+            path.append( path.length() == 0 ? "" : "/" ).append( segment );
+        }
+        return path.toString();
+    }
+
+    private static String decode( String link )
+    {
+        if ( link.indexOf( '%' ) < 0 )
+        {
+            return link;
+        }
+        try
+        {
+            // URLDecoder decodes form data, where a plus is a space
+            return URLDecoder.decode( link.replace( "+", "%2B" ), "UTF-8" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return link;
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Lists the files of a site.
+     */
+    private class Scan
+        implements Callable<Walk>
+    {
+        private final File directory;
+
+        Scan( File directory )
+        {
+            this.directory = directory;
+        }
+
+        public Walk call()
+        {
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir( directory );
+            scanner.scan();
+
+            List<String> files = new ArrayList<String>();
+            for ( String path : scanner.getIncludedFiles() )
+            {
+                path = path.replace( '\\', '/' );
+                if ( !isExcluded( path ) )
+                {
+                    files.add( path );
+                }
+            }
+            return new Walk( directory, files );
+        }
+    }
+
+    /**
+     * Digests every file of a site and collects the broken links of its pages.
+     */
+    private class Walk
+    {
+        private final File directory;
+
+        private final List<String> files;
+
+        private final Set<String> paths;
+
+        private final Set<String> directories = new HashSet<String>();
+
+        private final Map<String, String> digests = new ConcurrentHashMap<String, String>();
+
+        private final Set<String> brokenLinks = Collections.synchronizedSet( new HashSet<String>() );
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        Walk( File directory, List<String> files )
+        {
+            this.directory = directory;
+            this.files = files;
+            this.paths = new HashSet<String>( files );
+
+            directories.add( "" );
+            for ( String file : files )
+            {
+                for ( int i = file.indexOf( '/' ); i > 0; i = file.indexOf( '/', i + 1 ) )
+                {
+                    directories.add( file.substring( 0, i ) );
+                }
+            }
+        }
+
+        /**
+         * Start the workers, which take the next file until all files are visited.
+         */
+        void start( ExecutorService executor, Collection<Future<?>> workers )
+        {
+            for ( int i = 0; i < threads; i++ )
+            {
+                workers.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws IOException
+                    {
+                        for ( int index = next.getAndIncrement(); index < files.size(); index = next.getAndIncrement() )
+                        {
+                            visit( files.get( index ) );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+        }
+
+        private void visit( String path )
+            throws IOException
+        {
+            MessageDigest md5 = Digests.newMd5();
+            InputStream in = new DigestInputStream( new FileInputStream( new File( directory, path ) ), md5 );
+            try
+            {
+                String lowerCasePath = path.toLowerCase();
+                if ( lowerCasePath.endsWith( ".html" ) || lowerCasePath.endsWith( ".htm" ) )
+                {
+                    scanLinks( path, new InputStreamReader( in, encoding ) );
+                }
+                else
+                {
+                    byte[] buffer = new byte[8192];
+                    while ( in.read( buffer ) >= 0 )
+                    {
+                        // digested while read
+                    }
+                }
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+            digests.put( path, Digests.toHex( md5.digest() ) );
+        }
+
+        /**
+         * Reads the page to the end, an attribute never spans several lines so the links are matched per line.
+         */
+        private void scanLinks( String page, Reader reader )
+            throws IOException
+        {
+            StringBuilder line = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ( ( read = reader.read( buffer ) ) >= 0 )
+            {
+                int lineStart = 0;
+                for ( int i = 0; i < read; i++ )
+                {
+                    if ( buffer[i] == '\n' )
+                    {
+                        line.append( buffer, lineStart, i - lineStart );
+                        checkLinks( page, line );
+                        line.setLength( 0 );
+                        lineStart = i + 1;
+                    }
+                }
+                line.append( buffer, lineStart, read - lineStart );
+            }
+            checkLinks( page, line );
+        }
+
+        private void checkLinks( String page, CharSequence line )
+        {
+            Matcher matcher = LINK.matcher( line );
+            while ( matcher.find() )
+            {
+                String link = matcher.group( 1 ) != null ? matcher.group( 1 ) : matcher.group( 2 );
+                if ( isBroken( page, link ) )
+                {
+                    brokenLinks.add( page + " -> " + link );
+                }
+            }
+        }
+
+        private boolean isBroken( String page, String link )
+        {
+            String target = link.trim();
+            int end = target.length();
+            for ( char terminator : new char[] { '#', '?' } )
+            {
+                int index = target.indexOf( terminator );
+                if ( index >= 0 && index < end )
+                {
+                    end = index;
+                }
+            }
+            target = target.substring( 0, end );
+
+            // only local links are verified, absolute paths depend on the server
+            if ( target.length() == 0 || target.startsWith( "/" ) || target.indexOf( "${" ) >= 0
+                || SCHEME.matcher( target ).find() )
+            {
+                return false;
+            }
+
+            String path = resolve( page, decode( target ) );
+            return path != null && !paths.contains( path ) && !directories.contains( path )
+                && !isExcluded( path + '/' );
+        }
+    }
+
+    /**
+     * The result of a verification.
+     */
+    static class Result
+    {
+        private final int files;
+
+        private final boolean compared;
+
+        private final Set<String> added = new TreeSet<String>();
+
+        private final Set<String> lost = new TreeSet<String>();
+
+        private int changed;
+
+        private final Set<String> brokenLinks = new TreeSet<String>();
+
+        private int alreadyBroken;
+
+        Result( Walk generated, Map<String, String> publishedDigests, Set<String> publishedBrokenLinks )
+        {
+            files = generated.digests.size();
+            compared = publishedDigests != null;
+            if ( compared )
+            {
+                for ( Map.Entry<String, String> digest : generated.digests.entrySet() )
+                {
+                    String publishedDigest = publishedDigests.get( digest.getKey() );
+                    if ( publishedDigest == null )
+                    {
+                        added.add( digest.getKey() );
+                    }
+                    else if ( !publishedDigest.equals( digest.getValue() ) )
+                    {
+                        changed++;
+                    }
+                }
+                for ( String path : publishedDigests.keySet() )
+                {
+                    if ( !generated.digests.containsKey( path ) )
+                    {
+                        lost.add( path );
+                    }
+                }
+            }
+
+            // links which were already broken in the published site are not caused by the reskin
+            for ( String brokenLink : generated.brokenLinks )
+            {
+                if ( publishedBrokenLinks != null && publishedBrokenLinks.contains( brokenLink ) )
+                {
+                    alreadyBroken++;
+                }
+                else
+                {
+                    brokenLinks.add( brokenLink );
+                }
+            }
+        }
+
+        /**
+         * @return {@code true} if files of the published site have been lost or links have been broken
+         */
+        boolean isFailed()
+        {
+            return !lost.isEmpty() || !brokenLinks.isEmpty();
+        }
+
+        /**
+         * @return the numbers of the verification, on one line
+         */
+        String getSummary()
+        {
+            StringBuilder summary = new StringBuilder().append( files ).append( " files" );
+            if ( compared )
+            {
+                summary.append( ", " ).append( changed ).append( " changed, " ).append( added.size() );
+                summary.append( " added, " ).append( lost.size() ).append( " lost" );
+            }
+            summary.append( ", " ).append( brokenLinks.size() ).append( " broken links" );
+            if ( alreadyBroken > 0 )
+            {
+                summary.append( " (" ).append( alreadyBroken ).append( " already broken in the published site)" );
+            }
+            return summary.toString();
+        }
+
+        /**
+         * Write the report, with the summary and the first lost and added files and broken links.
+         *
+         * @param report the report file
+         * @param siteDirectory the verified site
+         * @param published what the site has been compared with, {@code null} if it hasn't been compared
+         * @throws IOException if the report can't be written
+         */
+        void write( File report, File siteDirectory, String published )
+            throws IOException
+        {
+            report.getParentFile().mkdirs();
+            PrintWriter writer = new PrintWriter( WriterFactory.newWriter( report, WriterFactory.UTF_8 ) );
+            try
+            {
+                writer.println( "Site:     " + siteDirectory );
+                writer.println( "Compared: " + ( published == null ? "-" : published ) );
+                writer.println( "Result:   " + getSummary() );
+                writeSection( writer, "Lost", lost );
+                writeSection( writer, "Added", added );
+                writeSection( writer, "Broken links", brokenLinks );
+            }
+            finally
+            {
+                IOUtil.close( writer );
+            }
+        }
+
+        private static void writeSection( PrintWriter writer, String title, Set<String> entries )
+        {
+            if ( entries.isEmpty() )
+            {
+                return;
+            }
+
+            writer.println();
+            writer.println( title + ':' );
+            int count = 0;
+            for ( String entry : entries )
+            {
+                if ( count++ == REPORT_LIMIT )
+                {
+                    writer.println( "  ... and " + ( entries.size() - REPORT_LIMIT ) + " more" );
+                    break;
+                }
+                writer.println( "  " + entry );
+            }
+        }
+    }
+}
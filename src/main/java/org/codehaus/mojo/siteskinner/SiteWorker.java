@@ -0,0 +1,127 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+/**
+ * A long-living JVM executing successive Maven builds with an embedded Maven 3.x installation. Every line read from
+ * the standard input is a build request, see {@link #toRequest(File, String[])}. The output of the build is written to
+ * the standard output, followed by a line starting with {@link #DONE} and the exit code.
+ * <p>
+ * Only depends on the JDK, so the plugin jar is the only entry of the classpath of the worker.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class SiteWorker
+{
+    /**
+     * Written once the worker is able to execute builds.
+     */
+    static final String READY = "@@siteskinner-worker-ready@@";
+
+    /**
+     * Written if the Maven installation can't be embedded, the worker exits afterwards.
+     */
+    static final String UNSUPPORTED = "@@siteskinner-worker-unsupported@@";
+
+    /**
+     * Written after a build, followed by its exit code.
+     */
+    static final String DONE = "@@siteskinner-worker-done@@ ";
+
+    private static final String ENCODING = "UTF-8";
+
+    private SiteWorker()
+    {
+    }
+
+    /**
+     * @param args the Maven installation to use
+     * @throws Exception if the requests can't be read
+     */
+    public static void main( String[] args )
+        throws Exception
+    {
+        File mavenHome = new File( args[0] );
+        PrintStream out = System.out;
+
+        if ( !EmbeddedMaven.isSupported( mavenHome ) )
+        {
+            out.println( UNSUPPORTED );
+            out.flush();
+            return;
+        }
+        out.println( READY );
+        out.flush();
+
+        BufferedReader requests = new BufferedReader( new InputStreamReader( System.in, ENCODING ) );
+        String request;
+        while ( ( request = requests.readLine() ) != null )
+        {
+            String[] tokens = request.split( " " );
+            File workingDirectory = new File( URLDecoder.decode( tokens[0], ENCODING ) );
+            String[] buildArgs = new String[tokens.length - 1];
+            for ( int i = 0; i < buildArgs.length; i++ )
+            {
+                buildArgs[i] = URLDecoder.decode( tokens[i + 1], ENCODING );
+            }
+
+            int exitCode;
+            try
+            {
+                exitCode = EmbeddedMaven.execute( mavenHome, buildArgs, workingDirectory, out, out );
+            }
+            catch ( Exception e )
+            {
+                e.printStackTrace( out );
+                exitCode = 1;
+            }
+            out.println( DONE + exitCode );
+            out.flush();
+        }
+    }
+
+    /**
+     * Encode a build request as a single line.
+     *
+     * @param workingDirectory the directory to execute the build in
+     * @param args the command line arguments of the build
+     * @return the request, without line separator
+     * @throws UnsupportedEncodingException never
+     */
+    static String toRequest( File workingDirectory, String[] args )
+        throws UnsupportedEncodingException
+    {
+        StringBuffer request = new StringBuffer( URLEncoder.encode( workingDirectory.getAbsolutePath(), ENCODING ) );
+        for ( String arg : args )
+        {
+            request.append( ' ' ).append( URLEncoder.encode( arg, ENCODING ) );
+        }
+        return request.toString();
+    }
+}
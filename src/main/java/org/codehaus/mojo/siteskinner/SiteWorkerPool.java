@@ -0,0 +1,333 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+
+/**
+ * Keeps warm {@link SiteWorker} processes per Maven installation, so successive site builds don't have to start and
+ * warm up a new JVM. Every build still creates its own Plexus container through the <code>MavenCli</code>, so only the
+ * JVM, the loaded Maven classes and their JIT compilation are reused. There are at most as many workers per
+ * installation as processors, further builds wait for an idle worker. The workers live as long as the JVM of the
+ * running build.
+ *
+ * @since 1.1
+ */
+class SiteWorkerPool
+{
+    /**
+     * The maximum number of workers per Maven installation, each of them is a JVM running a complete Maven build
+     */
+    private static final int MAX_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private static final Map<File, LinkedList<Worker>> IDLE_WORKERS = new HashMap<File, LinkedList<Worker>>();
+
+    private static final List<Worker> ALL_WORKERS = new ArrayList<Worker>();
+
+    /**
+     * The number of started workers per Maven installation, idle or busy
+     */
+    private static final Map<File, Integer> WORKER_COUNTS = new HashMap<File, Integer>();
+
+    /**
+     * The Maven installations which can't be embedded, e.g. Maven 2.x.
+     */
+    private static final Set<File> UNSUPPORTED = new HashSet<File>();
+
+    static
+    {
+        Runtime.getRuntime().addShutdownHook( new Thread()
+        {
+            public void run()
+            {
+                synchronized ( IDLE_WORKERS )
+                {
+                    for ( Worker worker : ALL_WORKERS )
+                    {
+                        worker.destroy();
+                    }
+                }
+            }
+        } );
+    }
+
+    private final Log log;
+
+    SiteWorkerPool( Log log )
+    {
+        this.log = log;
+    }
+
+    /**
+     * Execute a build by an idle worker of the Maven installation. If all of them are busy a new worker is started, or
+     * when the maximum number of workers is reached, the build waits for an idle one.
+     *
+     * @param mavenHome the Maven installation
+     * @param args the command line arguments
+     * @param workingDirectory the directory to execute the build in
+     * @param outputHandler the handler for the output of the build
+     * @return the exit code of the build, or {@code null} if the Maven installation can't be used by a worker
+     * @throws IOException if the worker failed
+     */
+    Integer execute( File mavenHome, String[] args, File workingDirectory, InvocationOutputHandler outputHandler )
+        throws IOException
+    {
+        File home = mavenHome.getCanonicalFile();
+        Worker worker = acquire( home );
+        if ( worker == null )
+        {
+            return null;
+        }
+
+        boolean healthy = false;
+        try
+        {
+            int exitCode = worker.execute( SiteWorker.toRequest( workingDirectory, args ), outputHandler );
+            healthy = true;
+            return Integer.valueOf( exitCode );
+        }
+        finally
+        {
+            release( home, worker, healthy );
+        }
+    }
+
+    private Worker acquire( File home )
+        throws IOException
+    {
+        synchronized ( IDLE_WORKERS )
+        {
+            while ( true )
+            {
+                if ( UNSUPPORTED.contains( home ) )
+                {
+                    return null;
+                }
+
+                LinkedList<Worker> idleWorkers = IDLE_WORKERS.get( home );
+                if ( idleWorkers != null && !idleWorkers.isEmpty() )
+                {
+                    log.debug( "Reusing site worker for " + home );
+                    return idleWorkers.removeFirst();
+                }
+
+                if ( getWorkerCount( home ) < MAX_WORKERS )
+                {
+                    // reserve the worker before it's started outside of the lock
+                    WORKER_COUNTS.put( home, Integer.valueOf( getWorkerCount( home ) + 1 ) );
+                    break;
+                }
+
+                log.debug( "Waiting for an idle site worker for " + home );
+                try
+                {
+                    IDLE_WORKERS.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException( "Interrupted while waiting for a site worker" );
+                }
+            }
+        }
+
+        log.debug( "Starting site worker for " + home );
+        Worker worker = null;
+        boolean unsupported = false;
+        try
+        {
+            worker = Worker.start( home );
+            unsupported = worker == null;
+        }
+        finally
+        {
+            synchronized ( IDLE_WORKERS )
+            {
+                if ( worker != null )
+                {
+                    ALL_WORKERS.add( worker );
+                }
+                else
+                {
+                    WORKER_COUNTS.put( home, Integer.valueOf( getWorkerCount( home ) - 1 ) );
+                    if ( unsupported )
+                    {
+                        UNSUPPORTED.add( home );
+                    }
+                    IDLE_WORKERS.notifyAll();
+                }
+            }
+        }
+        return worker;
+    }
+
+    private static int getWorkerCount( File home )
+    {
+        Integer count = WORKER_COUNTS.get( home );
+        return count == null ? 0 : count.intValue();
+    }
+
+    private void release( File home, Worker worker, boolean healthy )
+    {
+        synchronized ( IDLE_WORKERS )
+        {
+            if ( healthy )
+            {
+                LinkedList<Worker> idleWorkers = IDLE_WORKERS.get( home );
+                if ( idleWorkers == null )
+                {
+                    idleWorkers = new LinkedList<Worker>();
+                    IDLE_WORKERS.put( home, idleWorkers );
+                }
+                idleWorkers.addLast( worker );
+            }
+            else
+            {
+                ALL_WORKERS.remove( worker );
+                WORKER_COUNTS.put( home, Integer.valueOf( getWorkerCount( home ) - 1 ) );
+                worker.destroy();
+            }
+            IDLE_WORKERS.notifyAll();
+        }
+    }
+
+    /**
+     * A running worker process.
+     */
+    private static final class Worker
+    {
+        private final Process process;
+
+        private final Writer requests;
+
+        private final BufferedReader output;
+
+        private Worker( Process process )
+            throws IOException
+        {
+            this.process = process;
+            this.requests = new OutputStreamWriter( process.getOutputStream(), "UTF-8" );
+            this.output = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+        }
+
+        /**
+         * @return the started worker, or {@code null} if it can't embed the Maven installation
+         */
+        static Worker start( File mavenHome )
+            throws IOException
+        {
+            List<String> command = new ArrayList<String>();
+            command.add( new File( System.getProperty( "java.home" ), "bin/java" ).getPath() );
+            String mavenOpts = System.getenv( "MAVEN_OPTS" );
+            if ( mavenOpts != null )
+            {
+                try
+                {
+                    for ( String mavenOpt : CommandLineUtils.translateCommandline( mavenOpts ) )
+                    {
+                        command.add( mavenOpt );
+                    }
+                }
+                catch ( Exception e )
+                {
+                    throw new IOException( "Invalid MAVEN_OPTS: " + e.getMessage() );
+                }
+            }
+            command.add( "-Dmaven.home=" + mavenHome.getPath() );
+            command.add( "-cp" );
+            command.add( getPluginJar().getPath() );
+            command.add( SiteWorker.class.getName() );
+            command.add( mavenHome.getPath() );
+
+            ProcessBuilder processBuilder = new ProcessBuilder( command );
+            processBuilder.redirectErrorStream( true );
+            Worker worker = new Worker( processBuilder.start() );
+
+            String line;
+            while ( ( line = worker.output.readLine() ) != null )
+            {
+                if ( SiteWorker.READY.equals( line ) )
+                {
+                    return worker;
+                }
+                else if ( SiteWorker.UNSUPPORTED.equals( line ) )
+                {
+                    worker.destroy();
+                    return null;
+                }
+            }
+            worker.destroy();
+            throw new IOException( "The site worker for " + mavenHome + " terminated during startup" );
+        }
+
+        int execute( String request, InvocationOutputHandler outputHandler )
+            throws IOException
+        {
+            requests.write( request );
+            requests.write( '\n' );
+            requests.flush();
+
+            String line;
+            while ( ( line = output.readLine() ) != null )
+            {
+                if ( line.startsWith( SiteWorker.DONE ) )
+                {
+                    return Integer.parseInt( line.substring( SiteWorker.DONE.length() ).trim() );
+                }
+                outputHandler.consumeLine( line );
+            }
+            throw new IOException( "The site worker terminated unexpectedly" );
+        }
+
+        void destroy()
+        {
+            process.destroy();
+        }
+
+        private static File getPluginJar()
+            throws IOException
+        {
+            try
+            {
+                return new File( SiteWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+            }
+            catch ( Exception e )
+            {
+                throw new IOException( "Unable to locate the siteskinner plugin: " + e.getMessage() );
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Call <code>mvn siteskinner:skin-all</code> on a maven project. This will reskin every released version within the
+ * {@code versionRange}, each version is checked out in its own directory under
+ * <code>target/siteskinner/&lt;version&gt;</code>. Several versions are reskinned at the same time.
+ * 
+ * @since 1.1
+ */
+@Mojo( name = "skin-all", requiresDirectInvocation = true, aggregator = true )
+public class SkinAllMojo
+    extends AbstractSkinMojo
+{
+    /**
+     * Versionrange of the released versions to reskin, e.g. <code>[1.0,2.0)</code>. By default all versions before
+     * the current version are reskinned.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.versionRange", defaultValue = "(,${project.version})" )
+    private String versionRange;
+
+    /**
+     * The maximum number of versions which are reskinned at the same time. Every version forks its own
+     * <code>mvn site</code>, so keep the available memory in mind when increasing this value.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.threads", defaultValue = "2" )
+    private int threads;
+
+    /**
+     * Stage the reskinned sites of all versions into {@code stagingDirectory}, each version in its own directory. Files
+     * which are the same for several versions, like the resources of the skin, are stored only once by linking them.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.stage", defaultValue = "false" )
+    private boolean stage;
+
+    /**
+     * The directory to stage the reskinned sites to.
+     * @since 1.1
+     */
+    @Parameter( property = "siteskinner.stagingDirectory",
+                defaultValue = "${project.build.directory}/siteskinner/staging" )
+    private File stagingDirectory;
+
+    /** {@inheritDoc} */
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        long start = System.currentTimeMillis();
+        List<Artifact> releasedArtifacts = resolveArtifacts( versionRange );
+        metrics.stage( "resolve-version", start );
+
+        if ( releasedArtifacts.isEmpty() )
+        {
+            getLog().info( "Unable to find a released version of the project in the range " + versionRange );
+            return;
+        }
+
+        getLog().info( "Reskinning " + releasedArtifacts.size() + " versions" );
+
+        configureInvoker();
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool( Math.max( 1, Math.min( threads, releasedArtifacts.size() ) ) );
+
+        Map<String, Future<File>> results = new LinkedHashMap<String, Future<File>>();
+        try
+        {
+            for ( final Artifact releasedArtifact : releasedArtifacts )
+            {
+                final File checkoutDirectory = new File( workingDirectory, releasedArtifact.getVersion() );
+
+                results.put( releasedArtifact.getVersion(), executor.submit( new Callable<File>()
+                {
+                    public File call()
+                        throws Exception
+                    {
+                        getLog().info( "Reskinning version " + releasedArtifact.getVersion() + " in "
+                                           + checkoutDirectory );
+                        return skin( releasedArtifact, checkoutDirectory,
+                                     new PrefixOutputHandler( releasedArtifact.getVersion() ) );
+                    }
+                } ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Map<String, File> siteDirectories = new LinkedHashMap<String, File>();
+        int failures = 0;
+        getLog().info( "Reskin summary:" );
+        for ( Map.Entry<String, Future<File>> result : results.entrySet() )
+        {
+            try
+            {
+                siteDirectories.put( result.getKey(), result.getValue().get() );
+                getLog().info( "  " + result.getKey() + " : SUCCESS" );
+            }
+            catch ( ExecutionException e )
+            {
+                failures++;
+                getLog().error( "  " + result.getKey() + " : FAILURE (" + e.getCause().getMessage() + ")" );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while reskinning " + result.getKey() );
+            }
+        }
+
+        if ( stage )
+        {
+            start = System.currentTimeMillis();
+            stageSites( siteDirectories );
+            metrics.stage( "stage", start );
+        }
+        writeMetrics();
+
+        if ( failures > 0 )
+        {
+            throw new MojoExecutionException( failures + " of " + results.size() + " versions failed to reskin" );
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected boolean isStagingRequired()
+    {
+        return stage;
+    }
+
+    /**
+     * Stage the generated sites, a fresh copy every time so the sites of removed versions don't remain.
+     */
+    private void stageSites( Map<String, File> siteDirectories )
+        throws MojoExecutionException
+    {
+        SiteStager stager = new SiteStager( getLog() );
+        try
+        {
+            FileUtils.deleteDirectory( stagingDirectory );
+            for ( Map.Entry<String, File> siteDirectory : siteDirectories.entrySet() )
+            {
+                stager.stage( siteDirectory.getValue(), new File( stagingDirectory, siteDirectory.getKey() ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to stage the sites to " + stagingDirectory + ": "
+                + e.getMessage(), e );
+        }
+        getLog().info( "Staged " + siteDirectories.size() + " versions to " + stagingDirectory + ", saved "
+                           + stager.getSavedBytes() / 1024 + " KB by linking identical files" );
+    }
+
+    /**
+     * Prefixes the output of the forked <code>mvn site</code> with the version, since the versions are built at the
+     * same time.
+     */
+    private class PrefixOutputHandler
+        implements InvocationOutputHandler
+    {
+        private final String prefix;
+
+        public PrefixOutputHandler( String version )
+        {
+            this.prefix = "[" + version + "] ";
+        }
+
+        public void consumeLine( String line )
+        {
+            getLog().info( prefix + line );
+        }
+    }
+}
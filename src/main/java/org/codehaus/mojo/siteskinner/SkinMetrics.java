@@ -0,0 +1,285 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Collects the duration of every stage of a reskin, together with the amount of fetched sources and the result of the
+ * site generation. Several versions can be reskinned at the same time, so every version has its own {@link Version}.
+ *
+ * @since 1.1
+ */
+class SkinMetrics
+{
+    private final long startTime = System.currentTimeMillis();
+
+    private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+
+    private final List<Version> versions = new ArrayList<Version>();
+
+    /**
+     * Record a stage which isn't specific for a version, like resolving the released versions.
+     *
+     * @param stage the name of the stage
+     * @param start the start time of the stage, in milliseconds
+     */
+    synchronized void stage( String stage, long start )
+    {
+        add( stages, stage, start );
+    }
+
+    /**
+     * @param version the reskinned version
+     * @return the metrics of the version
+     */
+    synchronized Version version( String version )
+    {
+        Version metrics = new Version( version );
+        versions.add( metrics );
+        return metrics;
+    }
+
+    /**
+     * Write the metrics as JSON.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can't be written
+     */
+    synchronized void write( File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Writer writer = WriterFactory.newWriter( file, "UTF-8" );
+        try
+        {
+            writer.write( toJson() );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    synchronized String toJson()
+    {
+        StringBuilder json = new StringBuilder( "{\n" );
+        json.append( "  \"duration\": " ).append( System.currentTimeMillis() - startTime ).append( ",\n" );
+        json.append( "  \"stages\": " );
+        appendStages( json, stages );
+        json.append( ",\n  \"versions\": [" );
+        for ( int i = 0; i < versions.size(); i++ )
+        {
+            json.append( i == 0 ? "\n" : ",\n" );
+            versions.get( i ).appendJson( json );
+        }
+        json.append( versions.isEmpty() ? "]\n}\n" : "\n  ]\n}\n" );
+        return json.toString();
+    }
+
+    /**
+     * Log a table with the duration of every stage per version.
+     *
+     * @param log the log to write to
+     */
+    synchronized void logSummary( Log log )
+    {
+        List<String> names = new ArrayList<String>( stages.keySet() );
+        for ( Version version : versions )
+        {
+            for ( String stage : version.stages.keySet() )
+            {
+                if ( !names.contains( stage ) )
+                {
+                    names.add( stage );
+                }
+            }
+        }
+
+        log.info( "Reskin metrics (ms):" );
+        for ( String name : names )
+        {
+            StringBuilder line = new StringBuilder( "  " ).append( StringUtils.rightPad( name, 24 ) );
+            line.append( StringUtils.leftPad( format( stages.get( name ) ), 10 ) );
+            for ( Version version : versions )
+            {
+                line.append( StringUtils.leftPad( format( version.stages.get( name ) ), 12 ) );
+            }
+            log.info( line.toString() );
+        }
+
+        for ( Version version : versions )
+        {
+            log.info( "  " + version.version + ": fetched " + version.fetchedFiles + " files ("
+                + version.fetchedBytes / 1024 + " KB), site generation "
+                + ( version.exitCode == null ? "not executed" : "exit code " + version.exitCode ) + ", deployment "
+                + ( version.deployExitCode == null ? "not executed" : "exit code " + version.deployExitCode ) );
+        }
+    }
+
+    private static String format( Long duration )
+    {
+        return duration == null ? "-" : duration.toString();
+    }
+
+    private static void add( Map<String, Long> stages, String stage, long start )
+    {
+        long duration = System.currentTimeMillis() - start;
+        Long previous = stages.get( stage );
+        stages.put( stage, Long.valueOf( previous == null ? duration : previous.longValue() + duration ) );
+    }
+
+    private static void appendStages( StringBuilder json, Map<String, Long> stages )
+    {
+        json.append( '{' );
+        boolean first = true;
+        for ( Map.Entry<String, Long> stage : stages.entrySet() )
+        {
+            json.append( first ? " " : ", " ).append( quote( stage.getKey() ) );
+            json.append( ": " ).append( stage.getValue() );
+            first = false;
+        }
+        json.append( first ? "}" : " }" );
+    }
+
+    private static String quote( String value )
+    {
+        StringBuilder quoted = new StringBuilder( "\"" );
+        for ( char c : value.toCharArray() )
+        {
+            if ( c == '"' || c == '\\' )
+            {
+                quoted.append( '\\' ).append( c );
+            }
+            else if ( c < ' ' )
+            {
+                quoted.append( String.format( "\\u%04x", Integer.valueOf( c ) ) );
+            }
+            else
+            {
+                quoted.append( c );
+            }
+        }
+        return quoted.append( '"' ).toString();
+    }
+
+    /**
+     * The metrics of a single reskinned version.
+     */
+    class Version
+    {
+        private final String version;
+
+        private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+
+        private int fetchedFiles;
+
+        private long fetchedBytes;
+
+        private Integer exitCode;
+
+        private String siteBuildMode;
+
+        private Integer deployExitCode;
+
+        private String deployMode;
+
+        private Version( String version )
+        {
+            this.version = version;
+        }
+
+        /**
+         * @param stage the name of the stage
+         * @param start the start time of the stage, in milliseconds
+         */
+        void stage( String stage, long start )
+        {
+            synchronized ( SkinMetrics.this )
+            {
+                add( stages, stage, start );
+            }
+        }
+
+        /**
+         * @param files the number of fetched files
+         * @param bytes the size of the fetched files
+         */
+        void fetched( int files, long bytes )
+        {
+            synchronized ( SkinMetrics.this )
+            {
+                fetchedFiles += files;
+                fetchedBytes += bytes;
+            }
+        }
+
+        /**
+         * @param mode the way the site has been generated, e.g. <code>fork</code>
+         * @param code the exit code of the site generation
+         */
+        void siteBuild( String mode, int code )
+        {
+            synchronized ( SkinMetrics.this )
+            {
+                siteBuildMode = mode;
+                exitCode = Integer.valueOf( code );
+            }
+        }
+
+        /**
+         * @param mode the way the site has been deployed, e.g. <code>incremental</code>
+         * @param code the exit code of the deployment
+         */
+        void deploy( String mode, int code )
+        {
+            synchronized ( SkinMetrics.this )
+            {
+                deployMode = mode;
+                deployExitCode = Integer.valueOf( code );
+            }
+        }
+
+        private void appendJson( StringBuilder json )
+        {
+            json.append( "    { \"version\": " ).append( quote( version ) );
+            json.append( ", \"fetchedFiles\": " ).append( fetchedFiles );
+            json.append( ", \"fetchedBytes\": " ).append( fetchedBytes );
+            json.append( ", \"siteBuildMode\": " ).append( siteBuildMode == null ? "null" : quote( siteBuildMode ) );
+            json.append( ", \"exitCode\": " ).append( exitCode );
+            json.append( ", \"deployMode\": " ).append( deployMode == null ? "null" : quote( deployMode ) );
+            json.append( ", \"deployExitCode\": " ).append( deployExitCode );
+            json.append( ", \"stages\": " );
+            appendStages( json, stages );
+            json.append( " }" );
+        }
+    }
+}
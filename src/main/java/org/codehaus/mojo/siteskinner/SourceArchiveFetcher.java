@@ -0,0 +1,183 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Fetches the sources of a released version from the source archives deployed with it, instead of checking them out.
+ * Released artifacts never change, so once resolved the sources are available from the local repository.
+ *
+ * @since 1.1
+ */
+class SourceArchiveFetcher
+{
+    /**
+     * The classifier and type of the source archives, in order of preference. A sources jar only contains the main
+     * sources, without the site, so it can't be used.
+     */
+    private static final String[][] ARCHIVES = { { "source-release", "zip" }, { "project", "zip" } };
+
+    private final ArtifactFactory factory;
+
+    private final ArtifactResolver resolver;
+
+    private final ArtifactRepository localRepository;
+
+    private final List<ArtifactRepository> remoteRepositories;
+
+    private final Log log;
+
+    SourceArchiveFetcher( ArtifactFactory factory, ArtifactResolver resolver, ArtifactRepository localRepository,
+                          List<ArtifactRepository> remoteRepositories, Log log )
+    {
+        this.factory = factory;
+        this.resolver = resolver;
+        this.localRepository = localRepository;
+        this.remoteRepositories = remoteRepositories;
+        this.log = log;
+    }
+
+    /**
+     * Resolve the preferred source archive of the released version.
+     *
+     * @param releasedArtifact the artifact of the released version
+     * @return the resolved archive, or {@code null} if none has been deployed
+     */
+    Artifact resolve( Artifact releasedArtifact )
+    {
+        for ( String[] archive : ARCHIVES )
+        {
+            Artifact archiveArtifact =
+                factory.createArtifactWithClassifier( releasedArtifact.getGroupId(), releasedArtifact.getArtifactId(),
+                                                      releasedArtifact.getVersion(), archive[1], archive[0] );
+            try
+            {
+                // the resolver isn't thread-safe, see ParentPrefetcher
+                synchronized ( resolver )
+                {
+                    resolver.resolve( archiveArtifact, remoteRepositories, localRepository );
+                }
+                return archiveArtifact;
+            }
+            catch ( ArtifactNotFoundException e )
+            {
+                log.debug( "No " + archive[0] + " archive: " + e.getMessage() );
+            }
+            catch ( ArtifactResolutionException e )
+            {
+                log.debug( "Unable to resolve the " + archive[0] + " archive: " + e.getMessage() );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extract the archive, without the root directory it might have.
+     *
+     * @param archive the resolved source archive
+     * @param targetDirectory the directory to extract the sources to
+     * @param includes the comma separated patterns of the files to extract, or {@code null} to extract all
+     * @return the number of extracted files
+     * @throws IOException if the archive can't be extracted
+     */
+    int extract( Artifact archive, File targetDirectory, String includes )
+        throws IOException
+    {
+        String root = archive.getArtifactId() + '-' + archive.getVersion() + '/';
+        String[] patterns = includes == null ? null : StringUtils.split( includes, "," );
+
+        int extracted = 0;
+        ZipInputStream zipInputStream = new ZipInputStream( new FileInputStream( archive.getFile() ) );
+        try
+        {
+            ZipEntry entry;
+            while ( ( entry = zipInputStream.getNextEntry() ) != null )
+            {
+                String path = entry.getName().replace( '\\', '/' );
+                if ( path.startsWith( root ) )
+                {
+                    path = path.substring( root.length() );
+                }
+
+                if ( entry.isDirectory() || path.length() == 0 || path.indexOf( "../" ) >= 0
+                    || !isIncluded( path, patterns ) )
+                {
+                    continue;
+                }
+
+                File file = new File( targetDirectory, path );
+                file.getParentFile().mkdirs();
+                OutputStream outputStream = new FileOutputStream( file );
+                try
+                {
+                    IOUtil.copy( zipInputStream, outputStream );
+                }
+                finally
+                {
+                    IOUtil.close( outputStream );
+                }
+                if ( entry.getTime() > 0 )
+                {
+                    file.setLastModified( entry.getTime() );
+                }
+                extracted++;
+            }
+        }
+        finally
+        {
+            IOUtil.close( zipInputStream );
+        }
+        return extracted;
+    }
+
+    private static boolean isIncluded( String path, String[] patterns )
+    {
+        if ( patterns == null )
+        {
+            return true;
+        }
+        for ( String pattern : patterns )
+        {
+            if ( org.codehaus.plexus.util.SelectorUtils.matchPath( pattern.trim(), path ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
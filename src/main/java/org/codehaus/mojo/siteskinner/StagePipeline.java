@@ -0,0 +1,175 @@
+package org.codehaus.mojo.siteskinner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the stages of a reskin as soon as the stages they depend on are done, so independent stages run at the same
+ * time, e.g. the publish date is resolved while the sources are checked out. When a stage fails, all other stages are
+ * cancelled, and waiting for any of them fails with the cause of that first failure. The duration of every successful
+ * stage is recorded in the metrics.
+ *
+ * @since 1.1
+ */
+class StagePipeline
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final SkinMetrics.Version metrics;
+
+    private final List<Future<?>> stages = new ArrayList<Future<?>>();
+
+    /**
+     * The cause of the first failed stage
+     */
+    private Throwable failure;
+
+    /**
+     * @param metrics the metrics of the reskinned version
+     */
+    StagePipeline( SkinMetrics.Version metrics )
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start a stage once its dependencies are done.
+     *
+     * @param name the name of the stage in the metrics
+     * @param task the work of the stage
+     * @param dependencies the stages which must be done first
+     * @return the result of the stage
+     */
+    <T> Future<T> stage( final String name, final Callable<T> task, final Future<?>... dependencies )
+    {
+        Future<T> stage = executor.submit( new Callable<T>()
+        {
+            public T call()
+                throws Exception
+            {
+                try
+                {
+                    for ( Future<?> dependency : dependencies )
+                    {
+                        await( dependency );
+                    }
+
+                    long start = System.currentTimeMillis();
+                    T result = task.call();
+                    metrics.stage( name, start );
+                    return result;
+                }
+                catch ( Exception e )
+                {
+                    fail( e );
+                    throw e;
+                }
+                catch ( Error e )
+                {
+                    fail( e );
+                    throw e;
+                }
+            }
+        } );
+
+        synchronized ( this )
+        {
+            stages.add( stage );
+            if ( failure != null )
+            {
+                stage.cancel( true );
+            }
+        }
+        return stage;
+    }
+
+    /**
+     * Wait for a stage to be done.
+     *
+     * @param stage the stage
+     * @return the result of the stage
+     * @throws Exception the cause of the first failed stage
+     */
+    <T> T await( Future<T> stage )
+        throws Exception
+    {
+        try
+        {
+            return stage.get();
+        }
+        catch ( CancellationException e )
+        {
+            throw getFailure( e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw getFailure( e.getCause() );
+        }
+    }
+
+    /**
+     * Don't accept new stages. Stages which are still running have been cancelled if another stage failed, otherwise
+     * they are finished.
+     */
+    void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Record the first failure and cancel the other stages, which interrupts the running ones.
+     */
+    private void fail( Throwable cause )
+    {
+        List<Future<?>> outstanding;
+        synchronized ( this )
+        {
+            if ( failure != null )
+            {
+                return;
+            }
+            failure = cause;
+            outstanding = new ArrayList<Future<?>>( stages );
+        }
+
+        for ( Future<?> stage : outstanding )
+        {
+            stage.cancel( true );
+        }
+    }
+
+    private synchronized Exception getFailure( Throwable cause )
+    {
+        Throwable first = failure != null ? failure : cause;
+        if ( first instanceof Error )
+        {
+            throw (Error) first;
+        }
+        return (Exception) first;
+    }
+}
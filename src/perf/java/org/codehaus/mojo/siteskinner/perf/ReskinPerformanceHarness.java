@@ -0,0 +1,399 @@
+package org.codehaus.mojo.siteskinner.perf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.DefaultInvoker;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.Invoker;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Runs complete reskins of the integration test fixtures and of a generated, scaled fixture without network access:
+ * the released versions come from the mock repository and their sources from the local SCM provider. Every fixture is
+ * reskinned from scratch (cold) and again with everything already in place (warm). The median duration of every stage
+ * is compared with a stored baseline, which makes the build fail on a regression.
+ * <p>
+ * The harness is executed by the <code>perf</code> profile, first with <code>generate</code> to prepare the fixtures
+ * before the mock repository starts, then with <code>run</code>. It's configured with system properties:
+ * <ul>
+ * <li><code>perf.basedir</code>: the basedir of the plugin project</li>
+ * <li><code>perf.plugin</code>: the <code>groupId:artifactId:version</code> of the plugin under test</li>
+ * <li><code>perf.repositoryUrl</code>: the URL of the mock repository</li>
+ * <li><code>perf.projects</code>: the integration test projects to reskin</li>
+ * <li><code>perf.versions</code>, <code>perf.modules</code>, <code>perf.locales</code>, <code>perf.pages</code>: the
+ * size of the scaled fixture</li>
+ * <li><code>perf.iterations</code>: the number of cold and warm reskins per fixture</li>
+ * <li><code>perf.baseline</code>: the properties file with the baseline</li>
+ * <li><code>perf.tolerance</code>: the allowed slowdown compared to the baseline, e.g. <code>0.25</code></li>
+ * <li><code>perf.minDelta</code>: the slowdown in milliseconds below which a stage is never a regression</li>
+ * </ul>
+ */
+public class ReskinPerformanceHarness
+{
+    private static final Pattern STAGES = Pattern.compile( "\"stages\": \\{([^}]*)\\}" );
+
+    private static final Pattern STAGE = Pattern.compile( "\"([^\"]+)\": (\\d+)" );
+
+    private final File basedir;
+
+    private final String plugin;
+
+    private final File fixturesDirectory;
+
+    private final File resultsDirectory;
+
+    public ReskinPerformanceHarness( File basedir, String plugin )
+    {
+        this.basedir = basedir;
+        this.plugin = plugin;
+        this.fixturesDirectory = new File( basedir, "target/perf" );
+        this.resultsDirectory = new File( basedir, "target/perf-results" );
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        ReskinPerformanceHarness harness =
+            new ReskinPerformanceHarness( new File( System.getProperty( "perf.basedir", "." ) ).getAbsoluteFile(),
+                                          System.getProperty( "perf.plugin" ) );
+        if ( args.length > 0 && "generate".equals( args[0] ) )
+        {
+            harness.generate( StringUtils.split( System.getProperty( "perf.projects", "" ), "," ) );
+        }
+        else
+        {
+            Map<String, Long> results =
+                harness.run( System.getProperty( "perf.repositoryUrl" ),
+                             Integer.parseInt( System.getProperty( "perf.iterations", "3" ) ) );
+
+            File baselineFile = new File( System.getProperty( "perf.baseline", "src/perf/baseline.properties" ) );
+            if ( !baselineFile.isAbsolute() )
+            {
+                baselineFile = new File( harness.basedir, baselineFile.getPath() );
+            }
+            harness.compare( results, baselineFile,
+                             Double.parseDouble( System.getProperty( "perf.tolerance", "0.25" ) ),
+                             Long.parseLong( System.getProperty( "perf.minDelta", "1000" ) ) );
+        }
+    }
+
+    /**
+     * Copy the fixtures of the integration tests and generate the scaled fixture.
+     *
+     * @param projects the integration test projects to reskin
+     * @throws IOException if the fixtures can't be written
+     */
+    public void generate( String[] projects )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( fixturesDirectory );
+        File repositoryDirectory = new File( basedir, "target/perf-repository" );
+        FileUtils.deleteDirectory( repositoryDirectory );
+        File scmDirectory = new File( basedir, "target/perf-scm" );
+        FileUtils.deleteDirectory( scmDirectory );
+
+        FileUtils.copyDirectoryStructure( new File( basedir, "src/it/mrm/repository" ), repositoryDirectory );
+        // the released poms of a previous generation must not be resolved from the local repository
+        FileUtils.deleteDirectory( new File( basedir, "target/local-repo/localhost" ) );
+
+        // target/perf/<project> is as deep as target/it/<project>, so the SCM paths of the released poms still match
+        String[] coordinates = plugin.split( ":" );
+        for ( String project : projects )
+        {
+            File projectDirectory = new File( fixturesDirectory, project.trim() );
+            FileUtils.copyDirectoryStructure( new File( basedir, "src/it/projects/" + project.trim() ),
+                                              projectDirectory );
+            for ( Object pom : FileUtils.getFiles( projectDirectory, "**/pom.xml", null ) )
+            {
+                String content = FileUtils.fileRead( (File) pom, "UTF-8" );
+                content = StringUtils.replace( content, "@project.groupId@", coordinates[0] );
+                content = StringUtils.replace( content, "@project.artifactId@", coordinates[1] );
+                content = StringUtils.replace( content, "@project.version@", coordinates[2] );
+                FileUtils.fileWrite( (File) pom, "UTF-8", content );
+            }
+        }
+
+        ScaledFixtureGenerator generator =
+            new ScaledFixtureGenerator( repositoryDirectory, scmDirectory, new File( fixturesDirectory, "scaled" ) );
+        generator.setVersions( Integer.getInteger( "perf.versions", 3 ).intValue() );
+        generator.setModules( Integer.getInteger( "perf.modules", 5 ).intValue() );
+        generator.setLocales( Integer.getInteger( "perf.locales", 3 ).intValue() );
+        generator.setPages( Integer.getInteger( "perf.pages", 10 ).intValue() );
+        generator.generate( plugin );
+    }
+
+    /**
+     * Reskin every fixture {@code iterations} times cold and warm.
+     *
+     * @param repositoryUrl the URL of the mock repository
+     * @param iterations the number of reskins of each kind
+     * @return the median duration per <code>fixture.kind.stage</code>, in milliseconds
+     * @throws Exception if a reskin fails
+     */
+    public Map<String, Long> run( String repositoryUrl, int iterations )
+        throws Exception
+    {
+        FileUtils.deleteDirectory( resultsDirectory );
+        resultsDirectory.mkdirs();
+
+        File settingsFile = new File( resultsDirectory, "settings.xml" );
+        String settings = FileUtils.fileRead( new File( basedir, "src/it/mrm/settings.xml" ), "UTF-8" );
+        FileUtils.fileWrite( settingsFile, "UTF-8",
+                             StringUtils.replace( settings, "@repository.proxy.url@", repositoryUrl ) );
+
+        Invoker invoker = new DefaultInvoker();
+        invoker.setMavenHome( new File( System.getProperty( "maven.home" ) ) );
+        invoker.setLocalRepositoryDirectory( new File( basedir, "target/local-repo" ) );
+
+        Map<String, List<Long>> durations = new TreeMap<String, List<Long>>();
+        File[] fixtures = fixturesDirectory.listFiles();
+        Arrays.sort( fixtures );
+        for ( File fixture : fixtures )
+        {
+            if ( !new File( fixture, "pom.xml" ).exists() )
+            {
+                continue;
+            }
+            List<String> goals = getGoals( fixture );
+            List<String> warmGoals = new ArrayList<String>( goals );
+            warmGoals.remove( "clean" );
+
+            for ( int i = 1; i <= iterations; i++ )
+            {
+                reskin( invoker, settingsFile, fixture, "cold", i, goals, durations );
+                reskin( invoker, settingsFile, fixture, "warm", i, warmGoals, durations );
+            }
+        }
+
+        Map<String, Long> results = new TreeMap<String, Long>();
+        for ( Map.Entry<String, List<Long>> duration : durations.entrySet() )
+        {
+            List<Long> values = duration.getValue();
+            Collections.sort( values );
+            results.put( duration.getKey(), values.get( values.size() / 2 ) );
+        }
+
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Long> result : results.entrySet() )
+        {
+            properties.setProperty( result.getKey(), result.getValue().toString() );
+        }
+        store( properties, new File( resultsDirectory, "results.properties" ) );
+        return results;
+    }
+
+    private void reskin( Invoker invoker, File settingsFile, File fixture, String kind, int iteration,
+                         List<String> goals, Map<String, List<Long>> durations )
+        throws Exception
+    {
+        String name = fixture.getName() + '.' + kind;
+        File metricsFile = new File( resultsDirectory, name + '-' + iteration + ".json" );
+        File logFile = new File( resultsDirectory, name + '-' + iteration + ".log" );
+
+        Properties properties = load( new File( fixture, "test.properties" ) );
+        // keep the caches within the fixture, so a clean build is a cold reskin
+        properties.setProperty( "siteskinner.cacheDirectory", "target/siteskinner-cache" );
+        properties.setProperty( "siteskinner.metricsFile", metricsFile.getPath() );
+
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setBaseDirectory( fixture );
+        request.setPomFile( new File( fixture, "pom.xml" ) );
+        request.setGoals( goals );
+        request.setProperties( properties );
+        request.setUserSettingsFile( settingsFile );
+        request.setInteractive( false );
+
+        final PrintWriter log = new PrintWriter( logFile, "UTF-8" );
+        InvocationOutputHandler outputHandler = new InvocationOutputHandler()
+        {
+            public void consumeLine( String line )
+            {
+                log.println( line );
+            }
+        };
+        request.setOutputHandler( outputHandler );
+        request.setErrorHandler( outputHandler );
+
+        System.out.println( "Reskinning " + fixture.getName() + " (" + kind + ", " + iteration + ")" );
+        long start = System.currentTimeMillis();
+        InvocationResult result;
+        try
+        {
+            result = invoker.execute( request );
+        }
+        finally
+        {
+            log.close();
+        }
+        long duration = System.currentTimeMillis() - start;
+
+        if ( result.getExitCode() != 0 )
+        {
+            throw new Exception( "Reskinning " + fixture.getName() + " failed, see " + logFile );
+        }
+
+        add( durations, name + ".total", duration );
+        if ( metricsFile.exists() )
+        {
+            Matcher stages = STAGES.matcher( FileUtils.fileRead( metricsFile, "UTF-8" ) );
+            Map<String, Long> sums = new TreeMap<String, Long>();
+            while ( stages.find() )
+            {
+                Matcher stage = STAGE.matcher( stages.group( 1 ) );
+                while ( stage.find() )
+                {
+                    Long sum = sums.get( stage.group( 1 ) );
+                    long value = Long.parseLong( stage.group( 2 ) );
+                    sums.put( stage.group( 1 ), Long.valueOf( sum == null ? value : sum.longValue() + value ) );
+                }
+            }
+            for ( Map.Entry<String, Long> sum : sums.entrySet() )
+            {
+                add( durations, name + '.' + sum.getKey(), sum.getValue().longValue() );
+            }
+        }
+    }
+
+    /**
+     * Compare the results with the baseline. Without a baseline the results are only reported.
+     *
+     * @throws Exception if a stage is slower than the baseline allows
+     */
+    public void compare( Map<String, Long> results, File baselineFile, double tolerance, long minDelta )
+        throws Exception
+    {
+        Properties baseline = load( baselineFile );
+
+        List<String> regressions = new ArrayList<String>();
+        System.out.println( "Reskin performance (ms):" );
+        System.out.println( "  " + StringUtils.rightPad( "stage", 48 ) + StringUtils.leftPad( "baseline", 10 )
+            + StringUtils.leftPad( "current", 10 ) + StringUtils.leftPad( "change", 10 ) );
+        for ( Map.Entry<String, Long> result : results.entrySet() )
+        {
+            long current = result.getValue().longValue();
+            String expected = baseline.getProperty( result.getKey() );
+            String change = "";
+            if ( expected != null )
+            {
+                long base = Long.parseLong( expected.trim() );
+                change = base == 0 ? "" : Math.round( 100.0 * ( current - base ) / base ) + "%";
+                if ( current - base > minDelta && current > base * ( 1 + tolerance ) )
+                {
+                    regressions.add( result.getKey() + ": " + base + " -> " + current + " ms" );
+                    change += " !";
+                }
+            }
+            System.out.println( "  " + StringUtils.rightPad( result.getKey(), 48 )
+                + StringUtils.leftPad( expected == null ? "-" : expected.trim(), 10 )
+                + StringUtils.leftPad( result.getValue().toString(), 10 ) + StringUtils.leftPad( change, 10 ) );
+        }
+
+        if ( baseline.isEmpty() )
+        {
+            System.out.println( "No baseline found at " + baselineFile + ", copy "
+                + new File( resultsDirectory, "results.properties" ) + " to create it" );
+        }
+        else if ( !regressions.isEmpty() )
+        {
+            throw new Exception( regressions.size() + " stages are slower than the baseline: " + regressions );
+        }
+    }
+
+    private static void add( Map<String, List<Long>> durations, String key, long duration )
+    {
+        List<Long> values = durations.get( key );
+        if ( values == null )
+        {
+            values = new ArrayList<Long>();
+            durations.put( key, values );
+        }
+        values.add( Long.valueOf( duration ) );
+    }
+
+    private List<String> getGoals( File fixture )
+        throws IOException
+    {
+        String goals = load( new File( fixture, "invoker.properties" ) ).getProperty( "invoker.goals" );
+        if ( goals == null )
+        {
+            goals = "clean ${project.groupId}:${project.artifactId}:${project.version}:skin";
+        }
+        String[] coordinates = plugin.split( ":" );
+        goals = StringUtils.replace( goals, "${project.groupId}", coordinates[0] );
+        goals = StringUtils.replace( goals, "${project.artifactId}", coordinates[1] );
+        goals = StringUtils.replace( goals, "${project.version}", coordinates[2] );
+        return new ArrayList<String>( Arrays.asList( StringUtils.split( goals ) ) );
+    }
+
+    private static Properties load( File file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        if ( file.exists() )
+        {
+            InputStream inputStream = new FileInputStream( file );
+            try
+            {
+                properties.load( inputStream );
+            }
+            finally
+            {
+                IOUtil.close( inputStream );
+            }
+        }
+        return properties;
+    }
+
+    private static void store( Properties properties, File file )
+        throws IOException
+    {
+        OutputStream outputStream = new FileOutputStream( file );
+        try
+        {
+            properties.store( outputStream, "siteskinner reskin performance, median in milliseconds" );
+        }
+        finally
+        {
+            IOUtil.close( outputStream );
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.codehaus.mojo.siteskinner.perf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Generates a project with several released versions, each with many modules, locales and pages, in the same layout
+ * as the fixtures of the integration tests: the released poms for the mock repository, the released sources for the
+ * local SCM provider and the current project which reskins all released versions.
+ */
+public class ScaledFixtureGenerator
+{
+    private static final String ARTIFACT_ID = "scaled";
+
+    private static final String[] LOCALES = { "de", "fr", "nl", "es", "it", "pt", "sv", "ja", "zh", "ru" };
+
+    private final File repositoryDirectory;
+
+    private final File scmDirectory;
+
+    private final File projectDirectory;
+
+    private int versions = 3;
+
+    private int modules = 5;
+
+    private int locales = 3;
+
+    private int pages = 10;
+
+    /**
+     * @param repositoryDirectory the directory of the mock repository
+     * @param scmDirectory the directory of the local SCM provider
+     * @param projectDirectory the directory of the current project
+     */
+    public ScaledFixtureGenerator( File repositoryDirectory, File scmDirectory, File projectDirectory )
+    {
+        this.repositoryDirectory = repositoryDirectory;
+        this.scmDirectory = scmDirectory;
+        this.projectDirectory = projectDirectory;
+    }
+
+    public void setVersions( int versions )
+    {
+        this.versions = versions;
+    }
+
+    public void setModules( int modules )
+    {
+        this.modules = modules;
+    }
+
+    public void setLocales( int locales )
+    {
+        this.locales = Math.min( locales, LOCALES.length + 1 );
+    }
+
+    public void setPages( int pages )
+    {
+        this.pages = pages;
+    }
+
+    /**
+     * Generate the fixture.
+     *
+     * @param plugin the <code>groupId:artifactId:version</code> of the plugin under test
+     * @throws IOException if the fixture can't be written
+     */
+    public void generate( String plugin )
+        throws IOException
+    {
+        for ( int i = 0; i < versions; i++ )
+        {
+            String version = "1." + i;
+            String pom = createReleasedPom( version );
+            write( new File( repositoryDirectory, ARTIFACT_ID + '-' + version + ".pom" ), pom );
+
+            File sources = new File( scmDirectory, ARTIFACT_ID + '-' + version );
+            write( new File( sources, "pom.xml" ), pom );
+            writeSite( sources, ARTIFACT_ID + ' ' + version, true );
+            for ( int m = 0; m < modules; m++ )
+            {
+                File module = new File( sources, "module-" + m );
+                write( new File( module, "pom.xml" ), createModulePom( version, m ) );
+                writeSite( module, "Module " + m, false );
+            }
+        }
+
+        write( new File( projectDirectory, "pom.xml" ), createCurrentPom( plugin ) );
+        write( new File( projectDirectory, "src/site/site.xml" ),
+               "<project>\n  <skin>\n    <groupId>org.apache.maven.skins</groupId>\n"
+                   + "    <artifactId>maven-fluido-skin</artifactId>\n    <version>1.7</version>\n"
+                   + "  </skin>\n</project>\n" );
+        write( new File( projectDirectory, "invoker.properties" ),
+               "invoker.goals = clean ${project.groupId}:${project.artifactId}:${project.version}:skin-all\n" );
+        write( new File( projectDirectory, "test.properties" ),
+               "siteskinner.versionRange=[1.0,1." + ( versions - 1 ) + "]\n" );
+    }
+
+    private String createReleasedPom( String version )
+    {
+        StringBuilder pom = new StringBuilder();
+        pom.append( "<project>\n  <modelVersion>4.0.0</modelVersion>\n" );
+        pom.append( "  <groupId>localhost</groupId>\n" );
+        pom.append( "  <artifactId>" ).append( ARTIFACT_ID ).append( "</artifactId>\n" );
+        pom.append( "  <version>" ).append( version ).append( "</version>\n  <packaging>pom</packaging>\n\n" );
+        // an absolute path, since Maven 3 normalizes the leading ../ of a relative one away
+        pom.append( "  <scm>\n    <developerConnection>scm:local|" );
+        pom.append( scmDirectory.getAbsolutePath().replace( '\\', '/' ) );
+        pom.append( "|${project.artifactId}-${project.version}</developerConnection>\n  </scm>\n\n" );
+        pom.append( "  <modules>\n" );
+        for ( int m = 0; m < modules; m++ )
+        {
+            pom.append( "    <module>module-" ).append( m ).append( "</module>\n" );
+        }
+        pom.append( "  </modules>\n\n  <build>\n    <extensions>\n      <extension>\n" );
+        pom.append( "        <groupId>org.apache.maven.scm</groupId>\n" );
+        pom.append( "        <artifactId>maven-scm-provider-local</artifactId>\n" );
+        pom.append( "        <version>1.7</version>\n      </extension>\n    </extensions>\n" );
+        if ( locales > 1 )
+        {
+            pom.append( "    <plugins>\n      <plugin>\n" );
+            pom.append( "        <groupId>org.apache.maven.plugins</groupId>\n" );
+            pom.append( "        <artifactId>maven-site-plugin</artifactId>\n" );
+            pom.append( "        <configuration>\n          <locales>" ).append( getLocales() );
+            pom.append( "</locales>\n        </configuration>\n      </plugin>\n    </plugins>\n" );
+        }
+        pom.append( "  </build>\n</project>\n" );
+        return pom.toString();
+    }
+
+    private String createModulePom( String version, int module )
+    {
+        StringBuilder pom = new StringBuilder();
+        pom.append( "<project>\n  <modelVersion>4.0.0</modelVersion>\n  <parent>\n" );
+        pom.append( "    <groupId>localhost</groupId>\n    <artifactId>" ).append( ARTIFACT_ID );
+        pom.append( "</artifactId>\n    <version>" ).append( version ).append( "</version>\n  </parent>\n" );
+        pom.append( "  <artifactId>" ).append( ARTIFACT_ID ).append( "-module-" ).append( module );
+        pom.append( "</artifactId>\n  <packaging>pom</packaging>\n</project>\n" );
+        return pom.toString();
+    }
+
+    private String createCurrentPom( String plugin )
+    {
+        String[] coordinates = plugin.split( ":" );
+        StringBuilder pom = new StringBuilder();
+        pom.append( "<project>\n  <modelVersion>4.0.0</modelVersion>\n" );
+        pom.append( "  <groupId>localhost</groupId>\n" );
+        pom.append( "  <artifactId>" ).append( ARTIFACT_ID ).append( "</artifactId>\n" );
+        pom.append( "  <version>1." ).append( versions ).append( "-SNAPSHOT</version>\n" );
+        pom.append( "  <packaging>pom</packaging>\n\n  <build>\n    <plugins>\n" );
+        pom.append( "      <!-- required for local scm-provider -->\n      <plugin>\n" );
+        pom.append( "        <groupId>" ).append( coordinates[0] ).append( "</groupId>\n" );
+        pom.append( "        <artifactId>" ).append( coordinates[1] ).append( "</artifactId>\n" );
+        pom.append( "        <version>" ).append( coordinates[2] ).append( "</version>\n" );
+        pom.append( "        <dependencies>\n          <dependency>\n" );
+        pom.append( "            <groupId>org.apache.maven.scm</groupId>\n" );
+        pom.append( "            <artifactId>maven-scm-provider-local</artifactId>\n" );
+        pom.append( "            <version>1.7</version>\n          </dependency>\n        </dependencies>\n" );
+        pom.append( "      </plugin>\n    </plugins>\n  </build>\n</project>\n" );
+        return pom.toString();
+    }
+
+    /**
+     * The site of the project or a module: a site descriptor per locale for the project, and pages for every locale.
+     */
+    private void writeSite( File basedir, String name, boolean siteDescriptors )
+        throws IOException
+    {
+        for ( int l = 0; l < locales; l++ )
+        {
+            String locale = l == 0 ? null : LOCALES[l - 1];
+            File siteDirectory = new File( basedir, locale == null ? "src/site" : "src/site/" + locale );
+
+            StringBuilder siteXml = new StringBuilder( "<project name=\"" ).append( name ).append( "\">\n" );
+            siteXml.append( "  <body>\n    <menu name=\"Overview\">\n" );
+            for ( int p = 0; p < pages; p++ )
+            {
+                String page = "page-" + p;
+                siteXml.append( "      <item name=\"Page " ).append( p ).append( "\" href=\"" ).append( page );
+                siteXml.append( ".html\"/>\n" );
+
+                write( new File( siteDirectory, "apt/" + page + ".apt" ),
+                       " ------\n Page " + p + "\n ------\n\nPage " + p + "\n\n  Content of page " + p
+                           + ( locale == null ? "" : " (" + locale + ")" ) + " of " + name + ".\n" );
+            }
+            siteXml.append( "    </menu>\n    <menu ref=\"modules\"/>\n    <menu ref=\"reports\"/>\n" );
+            siteXml.append( "  </body>\n</project>\n" );
+
+            if ( siteDescriptors )
+            {
+                String fileName = locale == null ? "site.xml" : "site_" + locale + ".xml";
+                write( new File( basedir, "src/site/" + fileName ), siteXml.toString() );
+            }
+        }
+    }
+
+    private static void write( File file, String content )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file, "UTF-8", content );
+    }
+
+    private String getLocales()
+    {
+        StringBuilder value = new StringBuilder( "en" );
+        for ( int l = 1; l < locales; l++ )
+        {
+            value.append( ',' ).append( LOCALES[l - 1] );
+        }
+        return value.toString();
+    }
+}